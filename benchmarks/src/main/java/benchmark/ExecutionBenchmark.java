@@ -0,0 +1,64 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import solution.BlockProgram;
+import solution.ClosureProgram;
+import solution.Machine;
+import solution.Program;
+import solution.TieredEngine;
+
+import java.util.concurrent.TimeUnit;
+
+// Execution of pre-parsed programs: a tight arithmetic loop, deep CALL/RET recursion and MSG formatting.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+// Measures the engines themselves, so programs aren't evaluated, folded, inlined or rewritten while compiling.
+@Fork(value = 1, jvmArgsAppend = {"-Dassembly.evaluationBudget=0", "-Dassembly.loops=false",
+        "-Dassembly.tailCalls=false", "-Dassembly.inlining=false", "-Dassembly.constants=false"})
+@State(Scope.Benchmark)
+public class ExecutionBenchmark {
+    @Param({"loop", "recursion", "messages"})
+    public String name;
+
+    private String source;
+    private Program program;
+    private Machine machine;
+    private ClosureProgram closures;
+    private BlockProgram blocks;
+    private TieredEngine compiled;
+
+    @Setup
+    public void setup() {
+        source = Programs.source(name);
+        program = Program.compile(source);
+        machine = new Machine();
+        closures = ClosureProgram.compile(program);
+        blocks = BlockProgram.compile(program);
+
+        // Compiles on the first run, so every measured run executes bytecode.
+        compiled = new TieredEngine(0, 0);
+        compiled.interpret(source);
+    }
+
+    @Benchmark
+    public String interpreter() {
+        return machine.run(program);
+    }
+
+    @Benchmark
+    public String closures() {
+        return closures.run();
+    }
+
+    @Benchmark
+    public String blocks() {
+        return blocks.run();
+    }
+
+    @Benchmark
+    public String compiled() {
+        return compiled.interpret(source);
+    }
+}
@@ -0,0 +1,29 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import solution.CompilerOptions;
+import solution.Program;
+
+import java.util.concurrent.TimeUnit;
+
+// Comment stripping, label scanning, tokenization and operand decoding, without any execution.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+    @Benchmark
+    public void samples(Blackhole blackhole) {
+        for (String source : Programs.SAMPLES) {
+            blackhole.consume(Program.compile(source, CompilerOptions.NONE));
+        }
+    }
+
+    @Benchmark
+    public Program large() {
+        return Program.compile(Programs.LARGE, CompilerOptions.NONE);
+    }
+}
@@ -0,0 +1,53 @@
+package benchmark;
+
+// Sources used by the benchmarks. The samples are the programs from SolutionTest.
+final class Programs {
+    static final String[] SAMPLES = {
+            "\n; My first program\nmov  a, 5\ninc  a\ncall function\nmsg  '(5+1)/2 = ', a    ; output message\nend\n\nfunction:\n    div  a, 2\n    ret\n",
+            "\nmov   a, 5\nmov   b, a\nmov   c, a\ncall  proc_fact\ncall  print\nend\n\nproc_fact:\n    dec   b\n    mul   c, b\n    cmp   b, 1\n    jne   proc_fact\n    ret\n\nprint:\n    msg   a, '! = ', c ; output text\n    ret\n",
+            "\nmov   a, 8            ; value\nmov   b, 0            ; next\nmov   c, 0            ; counter\nmov   d, 0            ; first\nmov   e, 1            ; second\ncall  proc_fib\ncall  print\nend\n\nproc_fib:\n    cmp   c, 2\n    jl    func_0\n    mov   b, d\n    add   b, e\n    mov   d, e\n    mov   e, b\n    inc   c\n    cmp   c, a\n    jle   proc_fib\n    ret\n\nfunc_0:\n    mov   b, c\n    inc   c\n    jmp   proc_fib\n\nprint:\n    msg   'Term ', a, ' of Fibonacci series is: ', b        ; output text\n    ret\n",
+            "\nmov   a, 11           ; value1\nmov   b, 3            ; value2\ncall  mod_func\nmsg   'mod(', a, ', ', b, ') = ', d        ; output\nend\n\n; Mod function\nmod_func:\n    mov   c, a        ; temp1\n    div   c, b\n    mul   c, b\n    mov   d, a        ; temp2\n    sub   d, c\n    ret\n",
+            "\nmov   a, 81         ; value1\nmov   b, 153        ; value2\ncall  init\ncall  proc_gcd\ncall  print\nend\n\nproc_gcd:\n    cmp   c, d\n    jne   loop\n    ret\n\nloop:\n    cmp   c, d\n    jg    a_bigger\n    jmp   b_bigger\n\na_bigger:\n    sub   c, d\n    jmp   proc_gcd\n\nb_bigger:\n    sub   d, c\n    jmp   proc_gcd\n\ninit:\n    cmp   a, 0\n    jl    a_abs\n    cmp   b, 0\n    jl    b_abs\n    mov   c, a            ; temp1\n    mov   d, b            ; temp2\n    ret\n\na_abs:\n    mul   a, -1\n    jmp   init\n\nb_abs:\n    mul   b, -1\n    jmp   init\n\nprint:\n    msg   'gcd(', a, ', ', b, ') = ', c\n    ret\n",
+            "\ncall  func1\ncall  print\nend\n\nfunc1:\n    call  func2\n    ret\n\nfunc2:\n    ret\n\nprint:\n    msg 'This program should return null'\n",
+            "\nmov   a, 2            ; value1\nmov   b, 10           ; value2\nmov   c, a            ; temp1\nmov   d, b            ; temp2\ncall  proc_func\ncall  print\nend\n\nproc_func:\n    cmp   d, 1\n    je    continue\n    mul   c, a\n    dec   d\n    call  proc_func\n\ncontinue:\n    ret\n\nprint:\n    msg a, '^', b, ' = ', c\n    ret\n"};
+
+    // Sums the numbers below 1000000 in a tight loop.
+    static final String LOOP = "\nmov   i, 0\nmov   s, 0\nloop:\n    add   s, i\n    inc   i\n    cmp   i, 1000000\n    jl    loop\nmsg   'sum = ', s\nend\n";
+
+    // Recurses 10000 calls deep, 100 times over.
+    static final String RECURSION = "\nmov   n, 100\nmov   c, 0\nouter:\n    mov   d, 10000\n    call  down\n    dec   n\n    cmp   n, 0\n    jg    outer\nmsg   'calls = ', c\nend\n\ndown:\n    inc   c\n    dec   d\n    cmp   d, 0\n    je    bottom\n    call  down\nbottom:\n    ret\n";
+
+    // Builds a long output from many small messages.
+    static final String MESSAGES = "\nmov   i, 0\nloop:\n    mov   j, i\n    mul   j, i\n    msg   'line ', i, ': ', i, ' squared is ', j, ' | '\n    inc   i\n    cmp   i, 10000\n    jl    loop\nend\n";
+
+    // A long straight-line source, for measuring parsing alone.
+    static final String LARGE = large(2000);
+
+    private Programs() {
+    }
+
+    static String source(String name) {
+        return switch (name) {
+            case "loop" -> LOOP;
+            case "recursion" -> RECURSION;
+            case "messages" -> MESSAGES;
+            case "large" -> LARGE;
+            default -> throw new IllegalArgumentException("Unknown program " + name);
+        };
+    }
+
+    private static String large(int blocks) {
+        StringBuilder builder = new StringBuilder("mov   a, 0   ; accumulator\nmov   b, 1\n");
+        for (int i = 0; i < blocks; i++) {
+            builder.append("block_").append(i).append(":\n")
+                    .append("    add   a, b      ; step ").append(i).append('\n')
+                    .append("    mul   b, 3\n")
+                    .append("    div   b, 2\n")
+                    .append("    cmp   a, ").append(i * 7).append('\n')
+                    .append("    jl    block_").append(i + 1).append('\n')
+                    .append("    msg   'block ', a, ', ', b\n\n");
+        }
+
+        return builder.append("block_").append(blocks).append(":\nend\n").toString();
+    }
+}
@@ -0,0 +1,35 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import solution.CompilerOptions;
+import solution.Machine;
+import solution.Program;
+import solution.Solution;
+
+import java.util.concurrent.TimeUnit;
+
+// End to end runs of the sample programs, through the public entry points.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SolutionBenchmark {
+    @Benchmark
+    public void interpret(Blackhole blackhole) {
+        for (String source : Programs.SAMPLES) {
+            blackhole.consume(Solution.interpret(source));
+        }
+    }
+
+    // Parses and interprets every time, with no caching, optimizations or compilation.
+    @Benchmark
+    public void assemblyInterpreter(Blackhole blackhole) {
+        Machine machine = new Machine();
+        for (String source : Programs.SAMPLES) {
+            blackhole.consume(machine.run(Program.compile(source, CompilerOptions.NONE)));
+        }
+    }
+}
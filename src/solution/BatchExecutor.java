@@ -0,0 +1,217 @@
+package solution;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+// Runs many independent programs in parallel and returns their results in the order of the sources.
+// Each worker has a deque of programs, dealt out round robin. A worker runs the program at the head of its deque
+// for a slice and puts it back at the head unless it's done. Workers without programs of their own steal from the
+// tail of the others' deques. A stolen program may already have run for a while and continues where it left off,
+// see Execution, so however skewed the cost of the programs, no worker idles while another has programs waiting.
+// All programs run on one TieredEngine, so repeated sources are parsed once and long ones get compiled.
+// With an instruction budget, programs stay in the block engine, which counts their instructions.
+public final class BatchExecutor {
+    // Budget that means programs run until they end
+    public static final long UNLIMITED = Execution.UNLIMITED;
+
+    // Instructions a program runs before its worker looks for the next one
+    private static final long SLICE_LENGTH = 100_000;
+
+    // How long a worker without programs waits before trying to steal again
+    private static final long IDLE_NANOS = 50_000;
+
+    private final TieredEngine engine;
+    private final Executor executor;
+    private final int parallelism;
+    private final long budget;
+
+    // Summed up over all batches, by worker index
+    private final WorkerCounters[] counters;
+
+    public BatchExecutor() {
+        this(new TieredEngine(), ForkJoinPool.commonPool(), Runtime.getRuntime().availableProcessors());
+    }
+
+    // Any executor works, including one that starts a virtual thread per task on JDKs that have them.
+    // parallelism is the number of workers each batch is split across.
+    public BatchExecutor(Executor executor, int parallelism) {
+        this(new TieredEngine(), executor, parallelism);
+    }
+
+    public BatchExecutor(TieredEngine engine, Executor executor, int parallelism) {
+        this(engine, executor, parallelism, UNLIMITED);
+    }
+
+    // budget is the number of instructions each program may run, see TieredEngine.interpret(String, long).
+    public BatchExecutor(TieredEngine engine, Executor executor, int parallelism, long budget) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1.");
+        }
+
+        if (budget < 0) {
+            throw new IllegalArgumentException("Budget can't be negative.");
+        }
+
+        this.engine = engine;
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.budget = budget;
+        this.counters = new WorkerCounters[parallelism];
+        for (int i = 0; i < parallelism; i++) {
+            counters[i] = new WorkerCounters();
+        }
+    }
+
+    public List<ExecutionResult> run(Stream<String> sources) {
+        return run(sources.toList());
+    }
+
+    // Programs that throw an exception fail on their own. An Error, like running out of memory, ends the whole batch
+    // and is thrown from here wrapped in a CompletionException.
+    public List<ExecutionResult> run(Collection<String> sources) {
+        String[] programs = sources.toArray(new String[0]);
+        Batch batch = new Batch(programs.length, Math.min(parallelism, programs.length));
+        for (int i = 0; i < programs.length; i++) {
+            batch.deques.get(i % batch.deques.size()).add(new Job(i, programs[i]));
+        }
+
+        CompletableFuture<?>[] workers = new CompletableFuture<?>[batch.deques.size()];
+        for (int i = 0; i < workers.length; i++) {
+            int worker = i;
+            workers[i] = CompletableFuture.runAsync(() -> work(batch, worker), executor);
+        }
+
+        CompletableFuture.allOf(workers).join();
+        return List.of(batch.results);
+    }
+
+    public List<WorkerStats> getWorkerStats() {
+        List<WorkerStats> stats = new ArrayList<>();
+        for (WorkerCounters counter : counters) {
+            stats.add(counter.stats());
+        }
+
+        return stats;
+    }
+
+    private void work(Batch batch, int worker) {
+        Deque<Job> own = batch.deques.get(worker);
+        long start = System.nanoTime();
+        long busyNanos = 0;
+        long programs = 0;
+        long slices = 0;
+        long steals = 0;
+
+        while (batch.remaining.get() > 0) {
+            Job job = own.pollFirst();
+            if (job == null) {
+                job = steal(batch, worker);
+                if (job == null) {
+                    // Whatever is left is running on other workers, and may come back to their deques.
+                    LockSupport.parkNanos(IDLE_NANOS);
+                    continue;
+                }
+
+                steals++;
+            }
+
+            long sliceStart = System.nanoTime();
+            ExecutionResult result;
+            try {
+                result = slice(job);
+            } catch (Error e) {
+                // The program can't be finished, so the other workers stop too and the batch fails with the error.
+                batch.remaining.set(0);
+                throw e;
+            }
+
+            busyNanos += System.nanoTime() - sliceStart;
+            slices++;
+
+            if (result == null) {
+                own.addFirst(job);
+            } else {
+                batch.results[job.index] = result;
+                batch.remaining.decrementAndGet();
+                programs++;
+            }
+        }
+
+        WorkerCounters counter = counters[worker];
+        counter.programs.add(programs);
+        counter.slices.add(slices);
+        counter.steals.add(steals);
+        counter.busyNanos.add(busyNanos);
+        counter.idleNanos.add(System.nanoTime() - start - busyNanos);
+    }
+
+    private static Job steal(Batch batch, int thief) {
+        int workers = batch.deques.size();
+        for (int i = 1; i < workers; i++) {
+            Job job = batch.deques.get((thief + i) % workers).pollLast();
+            if (job != null) return job;
+        }
+
+        return null;
+    }
+
+    // Returns null if the program isn't done yet.
+    private ExecutionResult slice(Job job) {
+        try {
+            if (job.execution == null) {
+                job.execution = engine.start(job.source, budget);
+            }
+
+            return job.execution.run(SLICE_LENGTH) ? job.execution.getResult() : null;
+        } catch (RuntimeException e) {
+            return ExecutionResult.failed(e);
+        }
+    }
+
+    private static final class Batch {
+        private final ExecutionResult[] results;
+        private final List<Deque<Job>> deques;
+        private final AtomicInteger remaining;
+
+        Batch(int size, int workers) {
+            results = new ExecutionResult[size];
+            deques = new ArrayList<>();
+            for (int i = 0; i < workers; i++) {
+                deques.add(new ConcurrentLinkedDeque<>());
+            }
+
+            remaining = new AtomicInteger(size);
+        }
+    }
+
+    // A program and, once it started, where it is. Only ever in one deque or run by one worker at a time.
+    private static final class Job {
+        private final int index;
+        private final String source;
+        private Execution execution;
+
+        Job(int index, String source) {
+            this.index = index;
+            this.source = source;
+        }
+    }
+
+    private static final class WorkerCounters {
+        private final LongAdder programs = new LongAdder();
+        private final LongAdder slices = new LongAdder();
+        private final LongAdder steals = new LongAdder();
+        private final LongAdder busyNanos = new LongAdder();
+        private final LongAdder idleNanos = new LongAdder();
+
+        WorkerStats stats() {
+            return new WorkerStats(programs.sum(), slices.sum(), steals.sum(), busyNanos.sum(), idleNanos.sum());
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package solution;
+
+import java.util.*;
+
+import solution.BlockProgram.Exit;
+import solution.ClosureProgram.Closure;
+
+// Translates a Program into a BlockProgram. The instructions of each basic block become the closures
+// ClosureCompiler picks for them, and the jump, CALL, RET or END closing the block becomes its exit.
+// CALL pushes the index of the block to return to, so RET can continue there directly.
+final class BlockCompiler {
+    private final Instruction[] instructions;
+    private final ControlFlowGraph graph;
+    private final ClosureCompiler closures;
+
+    // Block index standing for the end of the program
+    private final int end;
+
+    private BlockCompiler(Program program) {
+        this.instructions = program.getInstructions();
+        this.graph = ControlFlowGraph.build(program);
+        this.closures = new ClosureCompiler(program);
+        this.end = graph.getBlocks().size();
+    }
+
+    static BlockProgram compile(Program program) {
+        BlockCompiler compiler = new BlockCompiler(program);
+
+        List<ControlFlowGraph.Block> blocks = compiler.graph.getBlocks();
+        BlockProgram.Block[] units = new BlockProgram.Block[blocks.size()];
+        for (ControlFlowGraph.Block block : blocks) {
+            units[block.getIndex()] = compiler.compile(block);
+        }
+
+        return new BlockProgram(units, program.getRegisterCount(), compiler.instructions.length);
+    }
+
+    private BlockProgram.Block compile(ControlFlowGraph.Block block) {
+        Instruction last = instructions[block.getEnd() - 1];
+        int bodyEnd = ControlFlowGraph.endsBlock(last) ? block.getEnd() - 1 : block.getEnd();
+
+        Closure[] body = new Closure[bodyEnd - block.getStart()];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = closures.compile(block.getStart() + i);
+        }
+
+        Exit exit;
+        if (bodyEnd == block.getEnd()) {
+            int next = blockAt(block.getEnd());
+            exit = frame -> next;
+        } else {
+            exit = exit(bodyEnd);
+        }
+
+        return new BlockProgram.Block(body, exit, block.getStart(), block.getEnd() - block.getStart());
+    }
+
+    private int blockAt(int instruction) {
+        ControlFlowGraph.Block block = graph.getBlockAt(instruction);
+        return block == null ? end : block.getIndex();
+    }
+
+    private Exit exit(int index) {
+        Instruction instruction = instructions[index];
+        if (instruction.function.isJump() && instruction.target < 0) {
+            Closure missing = closures.compile(index);
+            return missing::execute;
+        }
+
+        int target = instruction.function.isJump() ? blockAt(instruction.target) : -1;
+        int next = blockAt(index + 1 + instruction.function.getSkip());
+
+        return switch (instruction.function) {
+            case JMP -> frame -> target;
+            case JNE -> compared(index, frame -> frame.compareLeft != frame.compareRight ? target : next);
+            case JE -> compared(index, frame -> frame.compareLeft == frame.compareRight ? target : next);
+            case JGE -> compared(index, frame -> frame.compareLeft >= frame.compareRight ? target : next);
+            case JG -> compared(index, frame -> frame.compareLeft > frame.compareRight ? target : next);
+            case JLE -> compared(index, frame -> frame.compareLeft <= frame.compareRight ? target : next);
+            case JL -> compared(index, frame -> frame.compareLeft < frame.compareRight ? target : next);
+            case LOOP_JNE, LOOP_JE, LOOP_JGE, LOOP_JG, LOOP_JLE, LOOP_JL -> frame -> Closures.CountedLoop.run(instruction, frame) ? target : next;
+            case CALL -> frame -> {
+                frame.push(next);
+                return target;
+            };
+            case RET -> Frame::pop;
+            case END -> frame -> {
+                frame.result = frame.output.toString();
+                return Frame.HALT;
+            };
+            default -> branch(closures.condition(index), instruction, target, next);
+        };
+    }
+
+    // Unless a CMP certainly ran before the conditional jump at index, its exit fails like the interpreter does if none did.
+    private Exit compared(int index, Exit exit) {
+        if (closures.isCompared(index)) return exit;
+
+        int line = instructions[index].line;
+        return frame -> {
+            if (!frame.compared) {
+                throw BytecodeCompiler.notCompared(line);
+            }
+
+            return exit.next(frame);
+        };
+    }
+
+    // The exit of a superinstruction, which runs its compare before branching.
+    private static Exit branch(Closure condition, Instruction instruction, int target, int next) {
+        return switch (instruction.function) {
+            case CMP_JNE, STEP_JNE -> frame -> {
+                condition.execute(frame);
+                return frame.compareLeft != frame.compareRight ? target : next;
+            };
+            case CMP_JE, STEP_JE -> frame -> {
+                condition.execute(frame);
+                return frame.compareLeft == frame.compareRight ? target : next;
+            };
+            case CMP_JGE, STEP_JGE -> frame -> {
+                condition.execute(frame);
+                return frame.compareLeft >= frame.compareRight ? target : next;
+            };
+            case CMP_JG, STEP_JG -> frame -> {
+                condition.execute(frame);
+                return frame.compareLeft > frame.compareRight ? target : next;
+            };
+            case CMP_JLE, STEP_JLE -> frame -> {
+                condition.execute(frame);
+                return frame.compareLeft <= frame.compareRight ? target : next;
+            };
+            case CMP_JL, STEP_JL -> frame -> {
+                condition.execute(frame);
+                return frame.compareLeft < frame.compareRight ? target : next;
+            };
+            default -> throw new IllegalStateException("Instruction " + instruction + " doesn't end a block.");
+        };
+    }
+}
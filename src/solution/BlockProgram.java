@@ -0,0 +1,114 @@
+package solution;
+
+// A program compiled by BlockCompiler into one unit per basic block. A unit runs its straight-line body and then
+// its exit, which picks the next block, so the dispatch loop only runs once per block instead of per instruction.
+public final class BlockProgram {
+    // Returns the index of the next block, the block count for the end of the program or Frame.HALT after END.
+    interface Exit {
+        int next(Frame frame);
+    }
+
+    static final class Block {
+        private final ClosureProgram.Closure[] body;
+        private final Exit exit;
+
+        // The instructions of the original program the block stands for
+        private final int start;
+        private final int size;
+
+        Block(ClosureProgram.Closure[] body, Exit exit, int start, int size) {
+            this.body = body;
+            this.exit = exit;
+            this.start = start;
+            this.size = size;
+        }
+
+        int getSize() {
+            return size;
+        }
+
+        int execute(Frame frame) {
+            for (ClosureProgram.Closure closure : body) {
+                closure.execute(frame);
+            }
+
+            return exit.next(frame);
+        }
+    }
+
+    private final Block[] blocks;
+    private final int registerCount;
+    private final int instructionCount;
+
+    BlockProgram(Block[] blocks, int registerCount, int instructionCount) {
+        this.blocks = blocks;
+        this.registerCount = registerCount;
+        this.instructionCount = instructionCount;
+    }
+
+    public static BlockProgram compile(Program program) {
+        return BlockCompiler.compile(program);
+    }
+
+    // Runs the program from the start in a fresh frame.
+    public String run() {
+        Frame frame = new Frame(registerCount);
+        Block[] blocks = this.blocks;
+
+        int block = 0;
+        while (block < blocks.length) {
+            block = blocks[block].execute(frame);
+        }
+
+        return frame.result;
+    }
+
+    // Runs the program from the start in a fresh frame for at most budget instructions.
+    public ExecutionResult run(long budget) {
+        if (budget < 0) {
+            throw new IllegalArgumentException("Budget can't be negative.");
+        }
+
+        Execution execution = new Execution(this, budget);
+        try {
+            execution.run(Long.MAX_VALUE);
+        } catch (RuntimeException e) {
+            return ExecutionResult.failed(e);
+        }
+
+        return execution.getResult();
+    }
+
+    // Runs the program in the given frame until it ends or the next block would take it past the instruction budget.
+    // Returns whether it ended; the frame holds the result if so.
+    boolean run(Frame frame, long budget) {
+        Block[] blocks = this.blocks;
+
+        int block = 0;
+        while (block < blocks.length) {
+            budget -= blocks[block].size;
+            if (budget < 0) return false;
+
+            block = blocks[block].execute(frame);
+        }
+
+        return true;
+    }
+
+    Block getBlock(int index) {
+        return blocks[index];
+    }
+
+    int getBlockCount() {
+        return blocks.length;
+    }
+
+    // The index of the first instruction of the block, for switching to an engine that runs instructions
+    int getStart(int block) {
+        return block < blocks.length ? blocks[block].start : instructionCount;
+    }
+
+    Frame newFrame() {
+        return new Frame(registerCount);
+    }
+}
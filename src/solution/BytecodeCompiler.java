@@ -0,0 +1,614 @@
+package solution;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+
+import static solution.ClassWriter.Opcodes.*;
+
+// Translates a Program into a hidden class that executes it as JVM bytecode.
+// Registers become locals, labels become branch targets and CALL/RET use an int[] of return site ids.
+// Besides the start of the program, every loop header is an entry point so interpreted executions can switch over.
+// Backward jumps and calls go through a stub that checks for an interrupt every POLL_INTERVAL times. Given a
+// continuation, the check may also suspend the program, which stores its state and returns from the loop header
+// the jump went to, so it can be resumed there later.
+final class BytecodeCompiler {
+    // HotSpot doesn't JIT compile methods larger than this, so there is nothing to gain beyond it.
+    private static final int HUGE_METHOD_LIMIT = 8000;
+
+    // String constants hold at most 65535 bytes of modified UTF-8, which is at most 3 bytes per char.
+    private static final int MAX_STRING_CONSTANT = 65535 / 3;
+
+    // Backward jumps and calls between checks for an interrupt, in generated code and in Machine
+    static final int POLL_INTERVAL = 1024;
+
+    private static final Function[] FUNCTIONS = Function.values();
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final String CLASS_NAME = "solution/CompiledProgram$Code$";
+    private static final String INTERFACE_NAME = "solution/CompiledProgram$Code";
+    private static final String DESCRIPTOR = "(I[I[Z[IIIIZLjava/lang/StringBuilder;Lsolution/CompiledProgram$Continuation;)Ljava/lang/String;";
+    private static final String RUNTIME = "solution/BytecodeCompiler";
+    private static final String LOOPS = "solution/LoopAccelerator";
+    private static final String CONTINUATION_NAME = "solution/CompiledProgram$Continuation";
+    private static final String BUILDER = "java/lang/StringBuilder";
+
+    private static final int ENTRY = 1;
+    private static final int REGISTERS = 2;
+    private static final int DEFINED = 3;
+    private static final int STACK = 4;
+    private static final int STACK_POINTER = 5;
+    private static final int COMPARE_LEFT = 6;
+    private static final int COMPARE_RIGHT = 7;
+    private static final int COMPARED = 8;
+    private static final int OUTPUT = 9;
+    private static final int CONTINUATION = 10;
+    private static final int FIRST_REGISTER = 11;
+
+    private final Program program;
+    private final Instruction[] instructions;
+    private final ClassWriter.MethodWriter method;
+
+    private final BitSet[] definedBefore;
+    private final int[] flags;
+    private final ClassWriter.Label[] labels;
+
+    // Stubs in front of the targets of backward jumps and calls, by target
+    private final ClassWriter.Label[] backEdges;
+
+    private final int[] entryIds;
+    private final int[] returnSiteIds;
+
+    // Locals holding the iteration count of the LOOP_Jcc being run and its triangle number
+    private int iterations;
+    private int triangle;
+
+    // Local counting down the backward jumps and calls until the next check for an interrupt
+    private int polls;
+
+    // Whether a conditional jump may run before any CMP, in which case COMPARED is kept up to date
+    private boolean tracksCompared;
+
+    private BytecodeCompiler(Program program, ClassWriter.MethodWriter method) {
+        this.program = program;
+        this.instructions = program.getInstructions();
+        this.method = method;
+
+        definedBefore = DefinedRegisters.analyze(instructions, program.getRegisterCount());
+        flags = new int[program.getRegisterCount()];
+        labels = new ClassWriter.Label[instructions.length + 1];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = new ClassWriter.Label();
+        }
+
+        backEdges = new ClassWriter.Label[instructions.length + 1];
+
+        entryIds = new int[instructions.length + 1];
+        returnSiteIds = new int[instructions.length + 1];
+        Arrays.fill(entryIds, -1);
+        Arrays.fill(returnSiteIds, -1);
+    }
+
+    static CompiledProgram compile(Program program) {
+        // Malformed instructions only fail when the interpreter reaches them, so programs containing them stay there.
+        for (Instruction instruction : program.getInstructions()) {
+            if (instruction.operands.length < instruction.function.getOperandCount()) {
+                throw new IllegalStateException("Program contains malformed instructions.");
+            }
+        }
+
+        ClassWriter writer = new ClassWriter(CLASS_NAME, "java/lang/Object", INTERFACE_NAME);
+
+        ClassWriter.MethodWriter constructor = writer.method("<init>", "()V");
+        constructor.varInsn(ALOAD, 0);
+        constructor.methodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        constructor.insn(RETURN);
+        constructor.setMaxs(1, 1);
+
+        BytecodeCompiler compiler = new BytecodeCompiler(program, writer.method("execute", DESCRIPTOR));
+        compiler.emit();
+
+        try {
+            Class<?> type = LOOKUP.defineHiddenClass(writer.toByteArray(), true).lookupClass();
+            CompiledProgram.Code code = (CompiledProgram.Code) LOOKUP.findConstructor(type, MethodType.methodType(void.class)).invoke();
+            return new CompiledProgram(code, program.getRegisterCount(), compiler.entryIds, compiler.returnSiteIds);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Compiled program couldn't be loaded.", e);
+        }
+    }
+
+    private void emit() {
+        // Registers that may be read before they are written keep a flag so the read can fail like the interpreter does.
+        int locals = FIRST_REGISTER + program.getRegisterCount();
+        for (int i = 0; i < instructions.length; i++) {
+            if (definedBefore[i] == null) continue;
+
+            for (Operand operand : DefinedRegisters.reads(instructions[i])) {
+                if (!definedBefore[i].get(operand.value) && flags[operand.value] == 0) {
+                    flags[operand.value] = locals++;
+                }
+            }
+
+            if (isConditionalJump(instructions[i]) && !definedBefore[i].get(program.getRegisterCount())) {
+                tracksCompared = true;
+            }
+        }
+
+        iterations = locals++;
+        triangle = locals++;
+        polls = locals++;
+
+        // Return sites and entry points are numbered so RET and the entry can dispatch to them with a tableswitch.
+        ArrayList<ClassWriter.Label> returnSites = new ArrayList<>();
+        ArrayList<ClassWriter.Label> entries = new ArrayList<>();
+        entryIds[0] = 0;
+        entries.add(labels[0]);
+
+        for (int i = 0; i < instructions.length; i++) {
+            if (definedBefore[i] == null) continue;
+
+            Instruction instruction = instructions[i];
+            if (instruction.function == Function.CALL) {
+                returnSiteIds[i + 1] = returnSites.size();
+                returnSites.add(labels[i + 1]);
+            } else if (instruction.function.isJump() && !instruction.function.isFused() && instruction.target >= 0 && instruction.target <= i
+                    && entryIds[instruction.target] < 0) {
+                entryIds[instruction.target] = entries.size();
+                entries.add(labels[instruction.target]);
+            }
+        }
+
+        ClassWriter.Label[] returnTable = returnSites.toArray(new ClassWriter.Label[0]);
+        ClassWriter.Label invalid = new ClassWriter.Label();
+
+        // Registers are loaded from the caller's state. Entry points are only ever reached through real executions
+        // from the start, so registers that are definitely defined there are defined in that state too.
+        for (int register = 0; register < program.getRegisterCount(); register++) {
+            method.varInsn(ALOAD, REGISTERS);
+            method.push(register);
+            method.insn(IALOAD);
+            method.varInsn(ISTORE, FIRST_REGISTER + register);
+
+            if (flags[register] != 0) {
+                method.varInsn(ALOAD, DEFINED);
+                method.push(register);
+                method.insn(BALOAD);
+                method.varInsn(ISTORE, flags[register]);
+            }
+        }
+
+        method.push(POLL_INTERVAL);
+        method.varInsn(ISTORE, polls);
+
+        method.varInsn(ILOAD, ENTRY);
+        method.tableSwitch(0, invalid, entries.toArray(new ClassWriter.Label[0]));
+
+        for (int i = 0; i < instructions.length; i++) {
+            method.mark(labels[i]);
+            if (definedBefore[i] == null) continue;
+
+            Instruction instruction = instructions[i];
+            Operand[] operands = instruction.operands;
+            BitSet defined = definedBefore[i];
+
+            // Superinstructions only save interpreter dispatches. Here they do the work of their first instruction
+            // and fall through to the original instructions that follow them.
+            if (instruction.function.isCompareJump()) {
+                compare(operands[0], operands[1], defined);
+                continue;
+            } else if (instruction.function.isStepJump()) {
+                load(operands[0], defined);
+                method.push(operands[1].value);
+                method.insn(IADD);
+                store(operands[0]);
+                continue;
+            } else if (instruction.function.isLoop()) {
+                loop(instruction, i, defined);
+                continue;
+            }
+
+            // Jumping to a label that doesn't exist fails as soon as the jump is executed.
+            if (instruction.function.isJump() && instruction.target < 0) {
+                fail("Label " + instruction.label + " was fetched but doesn't exist.");
+                continue;
+            }
+
+            switch (instruction.function) {
+                case MOV -> {
+                    if (operands[1].isRegister() && !defined.get(operands[1].value)) {
+                        copy(operands[0], operands[1]);
+                    } else {
+                        load(operands[1], defined);
+                        store(operands[0]);
+                    }
+                }
+                case INC, DEC -> {
+                    load(operands[0], defined);
+                    method.push(instruction.function == Function.INC ? 1 : -1);
+                    method.insn(IADD);
+                    store(operands[0]);
+                }
+                case ADD, SUB, MUL -> {
+                    load(operands[0], defined);
+                    load(operands[1], defined);
+                    method.insn(switch (instruction.function) {
+                        case ADD -> IADD;
+                        case SUB -> ISUB;
+                        default -> IMUL;
+                    });
+                    store(operands[0]);
+                }
+                case DIV -> {
+                    load(operands[0], defined);
+                    load(operands[1], defined);
+                    if (operands[1].isRegister() || operands[1].value == 0) {
+                        method.methodInsn(INVOKESTATIC, RUNTIME, "divide", "(II)I", false);
+                    } else {
+                        method.insn(IDIV);
+                    }
+                    store(operands[0]);
+                }
+                case JMP -> method.jump(GOTO, target(instruction, i));
+                case CMP -> compare(operands[0], operands[1], defined);
+                case JNE, JE, JGE, JG, JLE, JL -> {
+                    if (!defined.get(program.getRegisterCount())) {
+                        ClassWriter.Label compared = new ClassWriter.Label();
+                        method.varInsn(ILOAD, COMPARED);
+                        method.jump(IFNE, compared);
+                        method.push(instruction.line);
+                        method.methodInsn(INVOKESTATIC, RUNTIME, "notCompared", "(I)Ljava/lang/RuntimeException;", false);
+                        method.insn(ATHROW);
+                        method.mark(compared);
+                    }
+
+                    method.varInsn(ILOAD, COMPARE_LEFT);
+                    method.varInsn(ILOAD, COMPARE_RIGHT);
+                    method.jump(switch (instruction.function) {
+                        case JNE -> IF_ICMPNE;
+                        case JE -> IF_ICMPEQ;
+                        case JGE -> IF_ICMPGE;
+                        case JG -> IF_ICMPGT;
+                        case JLE -> IF_ICMPLE;
+                        default -> IF_ICMPLT;
+                    }, target(instruction, i));
+                }
+                case CALL -> {
+                    method.varInsn(ALOAD, STACK);
+                    method.varInsn(ILOAD, STACK_POINTER);
+                    method.push(returnSiteIds[i + 1]);
+                    method.methodInsn(INVOKESTATIC, RUNTIME, "push", "([III)[I", false);
+                    method.varInsn(ASTORE, STACK);
+                    method.iinc(STACK_POINTER, 1);
+                    method.jump(GOTO, target(instruction, i));
+                }
+                case RET -> {
+                    if (returnTable.length == 0) {
+                        method.methodInsn(INVOKESTATIC, RUNTIME, "emptyStack", "()Ljava/lang/RuntimeException;", false);
+                        method.insn(ATHROW);
+                        continue;
+                    }
+
+                    method.varInsn(ILOAD, STACK_POINTER);
+                    ClassWriter.Label nonEmpty = new ClassWriter.Label();
+                    method.jump(IFNE, nonEmpty);
+                    method.methodInsn(INVOKESTATIC, RUNTIME, "emptyStack", "()Ljava/lang/RuntimeException;", false);
+                    method.insn(ATHROW);
+                    method.mark(nonEmpty);
+                    method.iinc(STACK_POINTER, -1);
+                    method.varInsn(ALOAD, STACK);
+                    method.varInsn(ILOAD, STACK_POINTER);
+                    method.insn(IALOAD);
+                    method.tableSwitch(0, invalid, returnTable);
+                }
+                case MSG -> {
+                    method.varInsn(ALOAD, OUTPUT);
+                    for (Operand operand : operands) {
+                        if (operand.kind == Operand.Kind.STRING) {
+                            String text = operand.text;
+                            for (int start = 0; start == 0 || start < text.length(); start += MAX_STRING_CONSTANT) {
+                                method.push(text.substring(start, Math.min(text.length(), start + MAX_STRING_CONSTANT)));
+                                method.methodInsn(INVOKEVIRTUAL, BUILDER, "append", "(Ljava/lang/String;)L" + BUILDER + ";", false);
+                            }
+                        } else {
+                            load(operand, defined);
+                            method.methodInsn(INVOKEVIRTUAL, BUILDER, "append", "(I)L" + BUILDER + ";", false);
+                        }
+                    }
+                    method.insn(POP);
+                }
+                case INVALID -> {
+                    method.push(operands[0].text);
+                    method.methodInsn(INVOKESTATIC, RUNTIME, "invalidLiteral", "(Ljava/lang/String;)Ljava/lang/RuntimeException;", false);
+                    method.insn(ATHROW);
+                }
+                case END -> {
+                    method.varInsn(ALOAD, OUTPUT);
+                    method.methodInsn(INVOKEVIRTUAL, BUILDER, "toString", "()Ljava/lang/String;", false);
+                    method.insn(ARETURN);
+                }
+            }
+        }
+
+        // Falling off the end of the program means there was no END, so there is no output.
+        method.mark(labels[instructions.length]);
+        method.insn(ACONST_NULL);
+        method.insn(ARETURN);
+
+        method.mark(invalid);
+        fail("Invalid entry point or return address.");
+
+        // The stubs share the code suspending the program, which continues at the entry they leave in ENTRY.
+        ClassWriter.Label suspend = null;
+        for (int target = 0; target < backEdges.length; target++) {
+            if (backEdges[target] == null) continue;
+
+            if (suspend == null) {
+                suspend = new ClassWriter.Label();
+            }
+
+            method.mark(backEdges[target]);
+            method.iinc(polls, -1);
+            method.varInsn(ILOAD, polls);
+            method.jump(IFNE, labels[target]);
+            method.push(POLL_INTERVAL);
+            method.varInsn(ISTORE, polls);
+            method.varInsn(ALOAD, CONTINUATION);
+            method.methodInsn(INVOKESTATIC, RUNTIME, "poll", "(L" + CONTINUATION_NAME + ";)Z", false);
+            method.jump(IFEQ, labels[target]);
+            method.push(entryIds[target]);
+            method.varInsn(ISTORE, ENTRY);
+            method.jump(GOTO, suspend);
+        }
+
+        if (suspend != null) {
+            method.mark(suspend);
+            suspend();
+        }
+        if (method.size() > HUGE_METHOD_LIMIT) {
+            throw new IllegalStateException("Program is too large to compile.");
+        }
+
+        // Suspending passes seven values, one more than LOOP_Jcc stacks up for loopIterations
+        method.setMaxs(7, locals);
+    }
+
+    // Applies the iteration count of the loop following the LOOP_Jcc at index to every register it changes and jumps
+    // past the loop, like LoopAccelerator.run. A count of 0 means the loop has to run after all.
+    private void loop(Instruction instruction, int index, BitSet defined) {
+        Operand[] operands = instruction.operands;
+        method.push(instruction.function.ordinal());
+        load(operands[0], defined);
+        load(operands[1], defined);
+        sum(operands, operands.length, operands[0], defined);
+        sum(operands, operands.length, operands[1], defined);
+        method.methodInsn(INVOKESTATIC, RUNTIME, "loopIterations", "(IIIII)I", false);
+        method.varInsn(ISTORE, iterations);
+        method.varInsn(ILOAD, iterations);
+        method.jump(IFEQ, labels[index + 1]);
+
+        method.varInsn(ILOAD, iterations);
+        method.methodInsn(INVOKESTATIC, LOOPS, "triangle", "(I)I", false);
+        method.varInsn(ISTORE, triangle);
+
+        for (int i = 2; i < operands.length; i += 2) {
+            Operand amount = operands[i + 1];
+            if (!isLoopRegister(amount, operands)) continue;
+
+            load(operands[i], defined);
+            method.varInsn(ILOAD, iterations);
+            load(amount, defined);
+            sum(operands, i, amount, defined);
+            method.insn(IADD);
+            method.insn(IMUL);
+            sum(operands, operands.length, amount, defined);
+            method.varInsn(ILOAD, triangle);
+            method.insn(IMUL);
+            method.insn(IADD);
+            method.insn(IADD);
+            store(operands[i]);
+        }
+
+        for (int i = 2; i < operands.length; i += 2) {
+            Operand amount = operands[i + 1];
+            if (isLoopRegister(amount, operands)) continue;
+
+            load(operands[i], defined);
+            method.varInsn(ILOAD, iterations);
+            load(amount, defined);
+            method.insn(IMUL);
+            method.insn(IADD);
+            store(operands[i]);
+        }
+
+        compare(operands[0], operands[1], defined);
+        method.jump(GOTO, target(instruction));
+    }
+
+    private void compare(Operand left, Operand right, BitSet defined) {
+        load(left, defined);
+        method.varInsn(ISTORE, COMPARE_LEFT);
+        load(right, defined);
+        method.varInsn(ISTORE, COMPARE_RIGHT);
+        if (tracksCompared) {
+            method.push(1);
+            method.varInsn(ISTORE, COMPARED);
+        }
+    }
+
+    // Pushes the sum of the amounts a LOOP_Jcc adds to a register before the pair of operands at end.
+    private void sum(Operand[] operands, int end, Operand register, BitSet defined) {
+        method.push(0);
+        if (!register.isRegister()) return;
+
+        for (int i = 2; i < end; i += 2) {
+            if (operands[i].value == register.value) {
+                load(operands[i + 1], defined);
+                method.insn(IADD);
+            }
+        }
+    }
+
+    private static boolean isConditionalJump(Instruction instruction) {
+        return switch (instruction.function) {
+            case JNE, JE, JGE, JG, JLE, JL -> instruction.target >= 0;
+            default -> false;
+        };
+    }
+
+    private static boolean isLoopRegister(Operand operand, Operand[] operands) {
+        if (!operand.isRegister()) return false;
+
+        for (int i = 2; i < operands.length; i += 2) {
+            if (operands[i].value == operand.value) return true;
+        }
+
+        return false;
+    }
+
+    // Stores the registers and their flags in the caller's arrays, and the rest of the state in the continuation.
+    private void suspend() {
+        for (int register = 0; register < program.getRegisterCount(); register++) {
+            method.varInsn(ALOAD, REGISTERS);
+            method.push(register);
+            method.varInsn(ILOAD, FIRST_REGISTER + register);
+            method.insn(IASTORE);
+
+            if (flags[register] != 0) {
+                method.varInsn(ALOAD, DEFINED);
+                method.push(register);
+                method.varInsn(ILOAD, flags[register]);
+                method.insn(BASTORE);
+            }
+        }
+
+        method.varInsn(ALOAD, CONTINUATION);
+        method.varInsn(ILOAD, ENTRY);
+        method.varInsn(ALOAD, STACK);
+        method.varInsn(ILOAD, STACK_POINTER);
+        method.varInsn(ILOAD, COMPARE_LEFT);
+        method.varInsn(ILOAD, COMPARE_RIGHT);
+        method.varInsn(ILOAD, COMPARED);
+        method.methodInsn(INVOKESTATIC, RUNTIME, "suspend", "(L" + CONTINUATION_NAME + ";I[IIIIZ)Ljava/lang/String;", false);
+        method.insn(ARETURN);
+    }
+
+    private ClassWriter.Label target(Instruction instruction) {
+        return labels[instruction.target];
+    }
+
+    // Like target, but backward jumps and calls go through the stub that checks for an interrupt.
+    private ClassWriter.Label target(Instruction instruction, int index) {
+        if (instruction.target > index) return target(instruction);
+
+        if (backEdges[instruction.target] == null) {
+            backEdges[instruction.target] = new ClassWriter.Label();
+        }
+
+        return backEdges[instruction.target];
+    }
+
+    private void load(Operand operand, BitSet defined) {
+        if (!operand.isRegister()) {
+            method.push(operand.value);
+            return;
+        }
+
+        if (!defined.get(operand.value)) {
+            ClassWriter.Label ok = new ClassWriter.Label();
+            method.varInsn(ILOAD, flags[operand.value]);
+            method.jump(IFNE, ok);
+            fail("Register " + operand.text + " was fetched but doesn't exist.");
+            method.mark(ok);
+        }
+
+        method.varInsn(ILOAD, FIRST_REGISTER + operand.value);
+    }
+
+    private void store(Operand register) {
+        method.varInsn(ISTORE, FIRST_REGISTER + register.value);
+        if (flags[register.value] != 0) {
+            method.push(1);
+            method.varInsn(ISTORE, flags[register.value]);
+        }
+    }
+
+    // MOV from a register that may not exist, which copies its flag instead of failing. A target without a flag is
+    // never read while it may not exist.
+    private void copy(Operand target, Operand source) {
+        method.varInsn(ILOAD, FIRST_REGISTER + source.value);
+        method.varInsn(ISTORE, FIRST_REGISTER + target.value);
+        if (flags[target.value] != 0) {
+            method.varInsn(ILOAD, flags[source.value]);
+            method.varInsn(ISTORE, flags[target.value]);
+        }
+    }
+
+    private void fail(String message) {
+        method.push(message);
+        method.methodInsn(INVOKESTATIC, RUNTIME, "failure", "(Ljava/lang/String;)Ljava/lang/RuntimeException;", false);
+        method.insn(ATHROW);
+    }
+
+    // Runtime helpers called from generated code
+
+    static int[] push(int[] stack, int size, int value) {
+        if (size == stack.length) {
+            stack = Arrays.copyOf(stack, size * 2);
+        }
+
+        stack[size] = value;
+        return stack;
+    }
+
+    // Once hot, an implicit division by zero may throw a preallocated exception without a message.
+    static int divide(int dividend, int divisor) {
+        if (divisor == 0) {
+            throw new ArithmeticException("/ by zero");
+        }
+
+        return dividend / divisor;
+    }
+
+    // Generated code can't load enum constants, so it passes the ordinal of the LOOP_Jcc.
+    static int loopIterations(int loop, int left, int right, int leftStep, int rightStep) {
+        return LoopAccelerator.iterations(FUNCTIONS[loop], left, right, leftStep, rightStep);
+    }
+
+    // Stops the program once its thread was interrupted. The interrupt stays set for the caller to see.
+    // Returns whether the program should suspend itself.
+    static boolean poll(CompiledProgram.Continuation continuation) {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Program was interrupted.");
+        }
+
+        return continuation != null && continuation.poll();
+    }
+
+    static String suspend(CompiledProgram.Continuation continuation, int entry, int[] stack, int stackSize,
+                          int compareLeft, int compareRight, boolean compared) {
+        continuation.suspend(entry, stack, stackSize, compareLeft, compareRight, compared);
+        return null;
+    }
+
+    static RuntimeException emptyStack() {
+        return new EmptyStackException();
+    }
+
+    // A conditional jump has nothing to go by before the first CMP. The other engines throw this too.
+    static RuntimeException notCompared(int line) {
+        return new IllegalStateException("Conditional jump at line " + line + " ran before any CMP.");
+    }
+
+    // What Integer.parseInt threw in the original interpreter for a literal that doesn't fit into an int
+    static RuntimeException invalidLiteral(String literal) {
+        return new NumberFormatException("For input string: \"" + literal + "\"");
+    }
+
+    static RuntimeException failure(String message) {
+        return new RuntimeException(message);
+    }
+}
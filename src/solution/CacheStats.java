@@ -0,0 +1,4 @@
+package solution;
+
+public record CacheStats(long hits, long misses, long evictions, int size, long weight) {
+}
@@ -0,0 +1,354 @@
+package solution;
+
+import java.io.*;
+import java.util.*;
+
+// A minimal class file writer, just enough for BytecodeCompiler.
+// Classes are written as version 49 so the JVM verifies them by type inference and no StackMapTable is needed.
+final class ClassWriter {
+    private static final int VERSION = 49;
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final HashMap<String, Integer> constants = new HashMap<>();
+    private int poolSize = 1;
+
+    private final int thisClass;
+    private final int superClass;
+    private final int[] interfaces;
+    private final ArrayList<MethodWriter> methods = new ArrayList<>();
+
+    ClassWriter(String name, String superName, String... interfaceNames) {
+        thisClass = classConstant(name);
+        superClass = classConstant(superName);
+        interfaces = new int[interfaceNames.length];
+        for (int i = 0; i < interfaceNames.length; i++) {
+            interfaces[i] = classConstant(interfaceNames[i]);
+        }
+    }
+
+    MethodWriter method(String name, String descriptor) {
+        MethodWriter method = new MethodWriter(utf8Constant(name), utf8Constant(descriptor));
+        methods.add(method);
+        return method;
+    }
+
+    byte[] toByteArray() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            int code = utf8Constant("Code");
+
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(poolSize);
+            pool.flush();
+            poolBytes.writeTo(out);
+
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(interfaces.length);
+            for (int index : interfaces) {
+                out.writeShort(index);
+            }
+
+            out.writeShort(0);
+            out.writeShort(methods.size());
+            for (MethodWriter method : methods) {
+                method.write(out, code);
+            }
+
+            out.writeShort(0);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int utf8Constant(String value) {
+        return constant("U" + value, out -> {
+            out.writeByte(1);
+            out.writeUTF(value);
+        });
+    }
+
+    private int classConstant(String internalName) {
+        int name = utf8Constant(internalName);
+        return constant("C" + internalName, out -> {
+            out.writeByte(7);
+            out.writeShort(name);
+        });
+    }
+
+    private int stringConstant(String value) {
+        int utf8 = utf8Constant(value);
+        return constant("S" + value, out -> {
+            out.writeByte(8);
+            out.writeShort(utf8);
+        });
+    }
+
+    private int integerConstant(int value) {
+        return constant("I" + value, out -> {
+            out.writeByte(3);
+            out.writeInt(value);
+        });
+    }
+
+    private int methodConstant(String owner, String name, String descriptor, boolean isInterface) {
+        int ownerIndex = classConstant(owner);
+        int nameIndex = utf8Constant(name);
+        int descriptorIndex = utf8Constant(descriptor);
+        int nameAndType = constant("N" + name + ":" + descriptor, out -> {
+            out.writeByte(12);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        });
+
+        return constant("M" + owner + "." + name + descriptor, out -> {
+            out.writeByte(isInterface ? 11 : 10);
+            out.writeShort(ownerIndex);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    private int constant(String key, Entry entry) {
+        Integer index = constants.get(key);
+        if (index != null) return index;
+
+        if (poolSize >= 0xFFFF) {
+            throw new IllegalStateException("Constant pool is too large.");
+        }
+
+        try {
+            entry.write(pool);
+        } catch (IOException e) {
+            throw new IllegalStateException("Constant " + key + " can't be encoded.", e);
+        }
+
+        constants.put(key, poolSize);
+        return poolSize++;
+    }
+
+    private interface Entry {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    static final class Label {
+        private int position = -1;
+    }
+
+    final class MethodWriter {
+        private final int name;
+        private final int descriptor;
+        private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+        private final ArrayList<Fixup> fixups = new ArrayList<>();
+
+        private int maxStack;
+        private int maxLocals;
+
+        private MethodWriter(int name, int descriptor) {
+            this.name = name;
+            this.descriptor = descriptor;
+        }
+
+        void setMaxs(int maxStack, int maxLocals) {
+            this.maxStack = maxStack;
+            this.maxLocals = maxLocals;
+        }
+
+        int size() {
+            return code.size();
+        }
+
+        void insn(int opcode) {
+            code.write(opcode);
+        }
+
+        void varInsn(int opcode, int index) {
+            if (index > 0xFF) {
+                code.write(Opcodes.WIDE);
+                code.write(opcode);
+                writeShort(index);
+            } else {
+                code.write(opcode);
+                code.write(index);
+            }
+        }
+
+        void iinc(int index, int delta) {
+            if (index > 0xFF || delta < Byte.MIN_VALUE || delta > Byte.MAX_VALUE) {
+                code.write(Opcodes.WIDE);
+                code.write(Opcodes.IINC);
+                writeShort(index);
+                writeShort(delta);
+            } else {
+                code.write(Opcodes.IINC);
+                code.write(index);
+                code.write(delta);
+            }
+        }
+
+        void push(int value) {
+            if (value >= -1 && value <= 5) {
+                code.write(Opcodes.ICONST_0 + value);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                code.write(Opcodes.BIPUSH);
+                code.write(value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                code.write(Opcodes.SIPUSH);
+                writeShort(value);
+            } else {
+                ldc(integerConstant(value));
+            }
+        }
+
+        void push(String value) {
+            ldc(stringConstant(value));
+        }
+
+        void methodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+            code.write(opcode);
+            writeShort(methodConstant(owner, name, descriptor, isInterface));
+        }
+
+        void jump(int opcode, Label label) {
+            int position = code.size();
+            code.write(opcode);
+            fixups.add(new Fixup(position, code.size(), false, label));
+            writeShort(0);
+        }
+
+        void tableSwitch(int low, Label defaultLabel, Label[] labels) {
+            int position = code.size();
+            code.write(Opcodes.TABLESWITCH);
+            while (code.size() % 4 != 0) {
+                code.write(0);
+            }
+
+            fixups.add(new Fixup(position, code.size(), true, defaultLabel));
+            writeInt(0);
+            writeInt(low);
+            writeInt(low + labels.length - 1);
+            for (Label label : labels) {
+                fixups.add(new Fixup(position, code.size(), true, label));
+                writeInt(0);
+            }
+        }
+
+        void mark(Label label) {
+            label.position = code.size();
+        }
+
+        private void ldc(int index) {
+            if (index > 0xFF) {
+                code.write(Opcodes.LDC_W);
+                writeShort(index);
+            } else {
+                code.write(Opcodes.LDC);
+                code.write(index);
+            }
+        }
+
+        private void writeShort(int value) {
+            code.write(value >>> 8);
+            code.write(value);
+        }
+
+        private void writeInt(int value) {
+            writeShort(value >>> 16);
+            writeShort(value);
+        }
+
+        private void write(DataOutputStream out, int codeAttribute) throws IOException {
+            byte[] bytes = code.toByteArray();
+            if (bytes.length > 0xFFFF) {
+                throw new IllegalStateException("Method is too large.");
+            }
+
+            for (Fixup fixup : fixups) {
+                if (fixup.label.position < 0) {
+                    throw new IllegalStateException("Unbound label.");
+                }
+
+                int offset = fixup.label.position - fixup.instruction;
+                if (fixup.wide) {
+                    bytes[fixup.patch] = (byte) (offset >>> 24);
+                    bytes[fixup.patch + 1] = (byte) (offset >>> 16);
+                    bytes[fixup.patch + 2] = (byte) (offset >>> 8);
+                    bytes[fixup.patch + 3] = (byte) offset;
+                } else {
+                    if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                        throw new IllegalStateException("Branch offset is too large.");
+                    }
+
+                    bytes[fixup.patch] = (byte) (offset >>> 8);
+                    bytes[fixup.patch + 1] = (byte) offset;
+                }
+            }
+
+            out.writeShort(ACC_PUBLIC);
+            out.writeShort(name);
+            out.writeShort(descriptor);
+            out.writeShort(1);
+
+            out.writeShort(codeAttribute);
+            out.writeInt(12 + bytes.length);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            out.writeShort(0);
+            out.writeShort(0);
+        }
+    }
+
+    private record Fixup(int instruction, int patch, boolean wide, Label label) {
+    }
+
+    static final class Opcodes {
+        static final int ACONST_NULL = 0x01;
+        static final int ICONST_0 = 0x03;
+        static final int BIPUSH = 0x10;
+        static final int SIPUSH = 0x11;
+        static final int LDC = 0x12;
+        static final int LDC_W = 0x13;
+        static final int ILOAD = 0x15;
+        static final int ALOAD = 0x19;
+        static final int IALOAD = 0x2E;
+        static final int BALOAD = 0x33;
+        static final int ISTORE = 0x36;
+        static final int ASTORE = 0x3A;
+        static final int IASTORE = 0x4F;
+        static final int BASTORE = 0x54;
+        static final int POP = 0x57;
+        static final int IADD = 0x60;
+        static final int ISUB = 0x64;
+        static final int IMUL = 0x68;
+        static final int IDIV = 0x6C;
+        static final int IINC = 0x84;
+        static final int IFEQ = 0x99;
+        static final int IFNE = 0x9A;
+        static final int IF_ICMPEQ = 0x9F;
+        static final int IF_ICMPNE = 0xA0;
+        static final int IF_ICMPLT = 0xA1;
+        static final int IF_ICMPGE = 0xA2;
+        static final int IF_ICMPGT = 0xA3;
+        static final int IF_ICMPLE = 0xA4;
+        static final int GOTO = 0xA7;
+        static final int TABLESWITCH = 0xAA;
+        static final int ARETURN = 0xB0;
+        static final int RETURN = 0xB1;
+        static final int INVOKEVIRTUAL = 0xB6;
+        static final int INVOKESPECIAL = 0xB7;
+        static final int INVOKESTATIC = 0xB8;
+        static final int ATHROW = 0xBF;
+        static final int WIDE = 0xC4;
+    }
+}
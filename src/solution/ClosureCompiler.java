@@ -0,0 +1,180 @@
+package solution;
+
+import java.util.*;
+
+import solution.ClosureProgram.Closure;
+import solution.Closures.*;
+
+// Picks the closure for each instruction of a Program by its function and operand kinds.
+// Instructions that may read a register before it was written are wrapped in Checked, which fails like the
+// interpreter does. BlockCompiler builds its blocks from the same closures.
+final class ClosureCompiler {
+    private final Instruction[] instructions;
+    private final int registerCount;
+    private final BitSet[] definedBefore;
+
+    ClosureCompiler(Program program) {
+        this.instructions = program.getInstructions();
+        this.registerCount = program.getRegisterCount();
+        this.definedBefore = DefinedRegisters.analyze(instructions, program.getRegisterCount());
+    }
+
+    static ClosureProgram compile(Program program) {
+        ClosureCompiler compiler = new ClosureCompiler(program);
+
+        Closure[] closures = new Closure[compiler.instructions.length];
+        for (int i = 0; i < closures.length; i++) {
+            closures[i] = compiler.compile(i);
+        }
+
+        return new ClosureProgram(closures, program.getRegisterCount());
+    }
+
+    Closure compile(int index) {
+        Instruction instruction = instructions[index];
+        Operand[] operands = instruction.operands;
+        if (operands.length < instruction.function.getOperandCount()) {
+            return new MissingOperand(operands.length);
+        }
+
+        if (instruction.function.isJump() && instruction.target < 0) {
+            return new MissingLabel(instruction.label);
+        }
+
+        int next = index + 1;
+        int target = instruction.target;
+        int slot = operands.length > 0 ? operands[0].value : -1;
+
+        return switch (instruction.function) {
+            case MOV -> operands[1].isRegister() ? new MovRegReg(slot, operands[1].value, next)
+                    : new MovRegImm(slot, operands[1].value, next);
+            case INC -> checked(new AddRegImm(slot, 1, next), index);
+            case DEC -> checked(new AddRegImm(slot, -1, next), index);
+            case ADD -> checked(operands[1].isRegister() ? new AddRegReg(slot, operands[1].value, next)
+                    : new AddRegImm(slot, operands[1].value, next), index);
+            case SUB -> checked(operands[1].isRegister() ? new SubRegReg(slot, operands[1].value, next)
+                    : new AddRegImm(slot, -operands[1].value, next), index);
+            case MUL -> checked(operands[1].isRegister() ? new MulRegReg(slot, operands[1].value, next)
+                    : new MulRegImm(slot, operands[1].value, next), index);
+            case DIV -> checked(operands[1].isRegister() ? new DivRegReg(slot, operands[1].value, next)
+                    : operands[1].value == 0 ? new DivByZero() : new DivRegImm(slot, operands[1].value, next), index);
+            case CMP -> compare(index);
+            case MSG -> checked(message(operands, next), index);
+            case JMP -> new Jmp(target);
+            case JNE -> compared(new Jne(target, next), index);
+            case JE -> compared(new Je(target, next), index);
+            case JGE -> compared(new Jge(target, next), index);
+            case JG -> compared(new Jg(target, next), index);
+            case JLE -> compared(new Jle(target, next), index);
+            case JL -> compared(new Jl(target, next), index);
+            case LOOP_JNE, LOOP_JE, LOOP_JGE, LOOP_JG, LOOP_JLE, LOOP_JL -> checked(new CountedLoop(instruction, target, next), index);
+            case CALL -> new Call(target, next);
+            case RET -> new Ret();
+            case END -> new End();
+            case INVALID -> new InvalidLiteral(operands[0].text);
+            default -> fused(instruction, condition(index), next + instruction.function.getSkip());
+        };
+    }
+
+    // The part of a superinstruction that runs before it branches: its compare, preceded by its INC or DEC for STEP_Jcc.
+    // Each part is checked like the original instruction it stands for.
+    Closure condition(int index) {
+        Instruction instruction = instructions[index];
+        if (instruction.function.isCompareJump()) {
+            return compare(index);
+        }
+
+        Operand[] operands = instruction.operands;
+        Closure step = checked(new AddRegImm(operands[0].value, operands[1].value, index + 1), index);
+        return new Pair(step, compare(operands[2], operands[3], index + 1));
+    }
+
+    private Closure compare(int index) {
+        Operand[] operands = instructions[index].operands;
+        return compare(operands[0], operands[1], index);
+    }
+
+    private Closure compare(Operand left, Operand right, int index) {
+        int next = index + 1;
+        Closure compare;
+        if (left.isRegister()) {
+            compare = right.isRegister() ? new CmpRegReg(left.value, right.value, next) : new CmpRegImm(left.value, right.value, next);
+        } else {
+            compare = right.isRegister() ? new CmpImmReg(left.value, right.value, next) : new CmpImmImm(left.value, right.value, next);
+        }
+
+        return checked(compare, index);
+    }
+
+    private static Closure fused(Instruction instruction, Closure condition, int next) {
+        return switch (instruction.function) {
+            case CMP_JNE, STEP_JNE -> new JneFused(condition, instruction.target, next);
+            case CMP_JE, STEP_JE -> new JeFused(condition, instruction.target, next);
+            case CMP_JGE, STEP_JGE -> new JgeFused(condition, instruction.target, next);
+            case CMP_JG, STEP_JG -> new JgFused(condition, instruction.target, next);
+            case CMP_JLE, STEP_JLE -> new JleFused(condition, instruction.target, next);
+            case CMP_JL, STEP_JL -> new JlFused(condition, instruction.target, next);
+            default -> throw new IllegalStateException("Instruction " + instruction + " isn't a superinstruction.");
+        };
+    }
+
+    // Neighbouring constant parts are joined up front, so only register parts are formatted at runtime.
+    private static Closure message(Operand[] parts, int next) {
+        ArrayList<String> texts = new ArrayList<>();
+        ArrayList<Integer> slots = new ArrayList<>();
+        StringBuilder constant = new StringBuilder();
+        for (Operand part : parts) {
+            if (!part.isRegister()) {
+                constant.append(part.kind == Operand.Kind.STRING ? part.text : Integer.toString(part.value));
+                continue;
+            }
+
+            if (constant.length() > 0) {
+                texts.add(constant.toString());
+                slots.add(-1);
+                constant.setLength(0);
+            }
+
+            texts.add(null);
+            slots.add(part.value);
+        }
+
+        if (constant.length() > 0) {
+            texts.add(constant.toString());
+            slots.add(-1);
+        }
+
+        return new Msg(texts.toArray(new String[0]), slots.stream().mapToInt(Integer::intValue).toArray(), next);
+    }
+
+    // Whether a CMP certainly ran before the instruction at index
+    boolean isCompared(int index) {
+        return definedBefore[index] != null && definedBefore[index].get(registerCount);
+    }
+
+    private Closure compared(Closure closure, int index) {
+        return isCompared(index) ? closure : new Compared(closure, instructions[index].line);
+    }
+
+    // Wraps the closure for the instruction at index in Checked, unless every register it reads certainly exists.
+    private Closure checked(Closure closure, int index) {
+        BitSet defined = definedBefore[index];
+        List<Operand> reads = DefinedRegisters.reads(instructions[index]);
+        if (defined != null) {
+            reads.removeIf(operand -> defined.get(operand.value));
+        }
+
+        if (reads.isEmpty()) {
+            return closure;
+        }
+
+        int[] slots = new int[reads.size()];
+        String[] names = new String[reads.size()];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = reads.get(i).value;
+            names[i] = reads.get(i).text;
+        }
+
+        return new Checked(slots, names, closure);
+    }
+}
@@ -0,0 +1,35 @@
+package solution;
+
+// A program compiled by ClosureCompiler into one closure per instruction. Each closure was picked for the operand
+// kinds of its instruction when the program was loaded, so running it never checks what an operand is.
+public final class ClosureProgram {
+    // Executes one instruction and returns the index of the next one, or Frame.HALT after END.
+    interface Closure {
+        int execute(Frame frame);
+    }
+
+    private final Closure[] closures;
+    private final int registerCount;
+
+    ClosureProgram(Closure[] closures, int registerCount) {
+        this.closures = closures;
+        this.registerCount = registerCount;
+    }
+
+    public static ClosureProgram compile(Program program) {
+        return ClosureCompiler.compile(program);
+    }
+
+    // Runs the program from the start in a fresh frame.
+    public String run() {
+        Frame frame = new Frame(registerCount);
+        Closure[] closures = this.closures;
+
+        int pointer = 0;
+        while (pointer < closures.length) {
+            pointer = closures[pointer].execute(frame);
+        }
+
+        return frame.result;
+    }
+}
@@ -0,0 +1,663 @@
+package solution;
+
+import solution.ClosureProgram.Closure;
+
+// The closures ClosureCompiler builds programs from, one class per instruction and operand kinds.
+// Register accesses are unchecked; ClosureCompiler wraps instructions that may read missing registers in Checked,
+// and conditional jumps that may run before any CMP in Compared.
+// Arithmetic only reads its target after Checked has made sure it exists, so only MOV marks registers as defined.
+// MOV from a register copies whether it exists along with its value and never fails.
+final class Closures {
+    private Closures() {
+    }
+
+    static final class Checked implements Closure {
+        private final int[] slots;
+        private final String[] names;
+        private final Closure closure;
+
+        Checked(int[] slots, String[] names, Closure closure) {
+            this.slots = slots;
+            this.names = names;
+            this.closure = closure;
+        }
+
+        @Override
+        public int execute(Frame frame) {
+            for (int i = 0; i < slots.length; i++) {
+                frame.get(slots[i], names[i]);
+            }
+
+            return closure.execute(frame);
+        }
+    }
+
+    // A conditional jump that may run before any CMP, which fails like the interpreter does if none ran.
+    static final class Compared implements Closure {
+        private final Closure closure;
+        private final int line;
+
+        Compared(Closure closure, int line) {
+            this.closure = closure;
+            this.line = line;
+        }
+
+        @Override
+        public int execute(Frame frame) {
+            if (!frame.compared) {
+                throw BytecodeCompiler.notCompared(line);
+            }
+
+            return closure.execute(frame);
+        }
+    }
+
+    // The INC or DEC and the compare of a STEP_Jcc superinstruction
+    static final class Pair implements Closure {
+        private final Closure first;
+        private final Closure second;
+
+        Pair(Closure first, Closure second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public int execute(Frame frame) {
+            first.execute(frame);
+            return second.execute(frame);
+        }
+    }
+
+    static final class MovRegImm implements Closure {
+        private final int slot;
+        private final int value;
+        private final int next;
+
+        MovRegImm(int slot, int value, int next) {
+            this.slot = slot;
+            this.value = value;
+            this.next = next;
+        }
+
+        @Override
+        public int execute(Frame frame) {
+            frame.set(slot, value);
+            return next;
+        }
+    }
+
+    static final class MovRegReg implements Closure {
+        private final int slot;
+        private final int from;
+        private final int next;
+
+        MovRegReg(int slot, int from, int next) {
+            this.slot = slot;
+            this.from = from;
+            this.next = next;
+        }
+
+        @Override
+        public int execute(Frame frame) {
+            frame.registers[slot] = frame.registers[from];
+            frame.defined[slot] = frame.defined[from];
+            return next;
+        }
+    }
+
+    // Also INC, DEC and SUB by an immediate
+    static final class AddRegImm implements Closure {
+        private final int slot;
+        private final int value;
+        private final int next;
+
+        AddRegImm(int slot, int value, int next) {
+            this.slot = slot;
+            this.value = value;
+            this.next = next;
+        }
+
+        @Override
+        public int execute(Frame frame) {
+            frame.registers[slot] += value;
+            return next;
+        }
+    }
+
+    static final class AddRegReg implements Closure {
+        private final int slot;
+        private final int from;
+        private final int next;
+
+        AddRegReg(int slot, int from, int next) {
+            this.slot = slot;
+            this.from = from;
+            this.next = next;
+        }
+
+        @Override
+        public int execute(Frame frame) {
+            frame.registers[slot] += frame.registers[from];
+            return next;
+        }
+    }
+
+    static final class SubRegReg implements Closure {
+        private final int slot;
+        private final int from;
+        private final int next;
+
+        SubRegReg(int slot, int from, int next) {
+            this.slot = slot;
+            this.from = from;
+            this.next = next;
+        }
+
+        @Override
+        public int execute(Frame frame) {
+            frame.registers[slot] -= frame.registers[from];
+            return next;
+        }
+    }
+
+    static final class MulRegImm implements Closure {
+        private final int slot;
+        private final int value;
+        private final int next;
+
+        MulRegImm(int slot, int value, int next) {
+            this.slot = slot;
+            this.value = value;
+            this.next = next;
+        }
+
+        @Override
+        public int execute(Frame frame) {
+            frame.registers[slot] *= value;
+            return next;
+        }
+    }
+
+    static final class MulRegReg implements Closure {
+        private final int slot;
+        private final int from;
+        private final int next;
+
+        MulRegReg(int slot, int from, int next) {
+            this.slot = slot;
+            this.from = from;
+            this.next = next;
+        }
+
+        @Override
+        public int execute(Frame frame) {
+            frame.registers[slot] *= frame.registers[from];
+            return next;
+        }
+    }
+
+    // Only for divisors other than 0
+    static final class DivRegImm implements Closure {
+        private final int slot;
+        private final int value;
+        private final int next;
+
+        DivRegImm(int slot, int value, int next) {
+            this.slot = slot;
+            this.value = value;
+            this.next = next;
+        }
+
+        @Override
+        public int execute(Frame frame) {
+            frame.registers[slot] /= value;
+            return next;
+        }
+    }
+
+    static final class DivRegReg implements Closure {
+        private final int slot;
+        private final int from;
+        private final int next;
+
+        DivRegReg(int slot, int from, int next) {
+            this.slot = slot;
+            this.from = from;
+            this.next = next;
+        }
+
+        @Override
+        public int execute(Frame frame) {
+            frame.registers[slot] = BytecodeCompiler.divide(frame.registers[slot], frame.registers[from]);
+            return next;
+        }
+    }
+
+    // DIV by an immediate 0, which fails once Checked made sure the register exists
+    static final class DivByZero implements Closure {
+        @Override
+        public int execute(Frame frame) {
+            throw new ArithmeticException("/ by zero");
+        }
+    }
+
+    static final class InvalidLiteral implements Closure {
+        private final String literal;
+
+        InvalidLiteral(String literal) {
+            this.literal = literal;
+        }
+
+        @Override
+        public int execute(Frame frame) {
+            throw BytecodeCompiler.invalidLiteral(literal);
+        }
+    }
+
+    static final class CmpRegReg implements Closure {
+        private final int left;
+        private final int right;
+        private final int next;
+
+        CmpRegReg(int left, int right, int next) {
+            this.left = left;
+            this.right = right;
+            this.next = next;
+        }
+
+        @Override
+        public int execute(Frame frame) {
+            frame.compareLeft = frame.registers[left];
+            frame.compareRight = frame.registers[right];
+            frame.compared = true;
+            return next;
+        }
+    }
+
+    static final class CmpRegImm implements Closure {
+        private final int left;
+        private final int right;
+        private final int next;
+
+        CmpRegImm(int left, int right, int next) {
+            this.left = left;
+            this.right = right;
+            this.next = next;
+        }
+
+        @Override
+        public int execute(Frame frame) {
+            frame.compareLeft = frame.registers[left];
+            frame.compareRight = right;
+            frame.compared = true;
+            return next;
+        }
+    }
+
+    static final class CmpImmReg implements Closure {
+        private final int left;
+        private final int right;
+        private final int next;
+
+        CmpImmReg(int left, int right, int next) {
+            this.left = left;
+            this.right = right;
+            this.next = next;
+        }
+
+        @Override
+        public int execute(Frame frame) {
+            frame.compareLeft = left;
+            frame.compareRight = frame.registers[right];
+            frame.compared = true;
+            return next;
+        }
+    }
+
+    static final class CmpImmImm implements Closure {
+        private final int left;
+        private final int right;
+        private final int next;
+
+        CmpImmImm(int left, int right, int next) {
+            this.left = left;
+            this.right = right;
+            this.next = next;
+        }
+
+        @Override
+        public int execute(Frame frame) {
+            frame.compareLeft = left;
+            frame.compareRight = right;
+            frame.compared = true;
+            return next;
+        }
+    }
+
+    // Each part is either constant text or, where the text is null, a register.
+    static final class Msg implements Closure {
+        private final String[] texts;
+        private final int[] slots;
+        private final int next;
+
+        Msg(String[] texts, int[] slots, int next) {
+            this.texts = texts;
+            this.slots = slots;
+            this.next = next;
+        }
+
+        @Override
+        public int execute(Frame frame) {
+            for (int i = 0; i < texts.length; i++) {
+                if (texts[i] != null) {
+                    frame.output.append(texts[i]);
+                } else {
+                    frame.output.append(frame.registers[slots[i]]);
+                }
+            }
+
+            return next;
+        }
+    }
+
+    static final class Jmp implements Closure {
+        private final int target;
+
+        Jmp(int target) {
+            this.target = target;
+        }
+
+        @Override
+        public int execute(Frame frame) {
+            return target;
+        }
+    }
+
+    static final class Jne implements Closure {
+        private final int target;
+        private final int next;
+
+        Jne(int target, int next) {
+            this.target = target;
+            this.next = next;
+        }
+
+        @Override
+        public int execute(Frame frame) {
+            return frame.compareLeft != frame.compareRight ? target : next;
+        }
+    }
+
+    static final class Je implements Closure {
+        private final int target;
+        private final int next;
+
+        Je(int target, int next) {
+            this.target = target;
+            this.next = next;
+        }
+
+        @Override
+        public int execute(Frame frame) {
+            return frame.compareLeft == frame.compareRight ? target : next;
+        }
+    }
+
+    static final class Jge implements Closure {
+        private final int target;
+        private final int next;
+
+        Jge(int target, int next) {
+            this.target = target;
+            this.next = next;
+        }
+
+        @Override
+        public int execute(Frame frame) {
+            return frame.compareLeft >= frame.compareRight ? target : next;
+        }
+    }
+
+    static final class Jg implements Closure {
+        private final int target;
+        private final int next;
+
+        Jg(int target, int next) {
+            this.target = target;
+            this.next = next;
+        }
+
+        @Override
+        public int execute(Frame frame) {
+            return frame.compareLeft > frame.compareRight ? target : next;
+        }
+    }
+
+    static final class Jle implements Closure {
+        private final int target;
+        private final int next;
+
+        Jle(int target, int next) {
+            this.target = target;
+            this.next = next;
+        }
+
+        @Override
+        public int execute(Frame frame) {
+            return frame.compareLeft <= frame.compareRight ? target : next;
+        }
+    }
+
+    static final class Jl implements Closure {
+        private final int target;
+        private final int next;
+
+        Jl(int target, int next) {
+            this.target = target;
+            this.next = next;
+        }
+
+        @Override
+        public int execute(Frame frame) {
+            return frame.compareLeft < frame.compareRight ? target : next;
+        }
+    }
+
+    // Superinstructions run their compare, then branch. Their next skips the original instructions.
+
+    static final class JneFused implements Closure {
+        private final Closure compare;
+        private final int target;
+        private final int next;
+
+        JneFused(Closure compare, int target, int next) {
+            this.compare = compare;
+            this.target = target;
+            this.next = next;
+        }
+
+        @Override
+        public int execute(Frame frame) {
+            compare.execute(frame);
+            return frame.compareLeft != frame.compareRight ? target : next;
+        }
+    }
+
+    static final class JeFused implements Closure {
+        private final Closure compare;
+        private final int target;
+        private final int next;
+
+        JeFused(Closure compare, int target, int next) {
+            this.compare = compare;
+            this.target = target;
+            this.next = next;
+        }
+
+        @Override
+        public int execute(Frame frame) {
+            compare.execute(frame);
+            return frame.compareLeft == frame.compareRight ? target : next;
+        }
+    }
+
+    static final class JgeFused implements Closure {
+        private final Closure compare;
+        private final int target;
+        private final int next;
+
+        JgeFused(Closure compare, int target, int next) {
+            this.compare = compare;
+            this.target = target;
+            this.next = next;
+        }
+
+        @Override
+        public int execute(Frame frame) {
+            compare.execute(frame);
+            return frame.compareLeft >= frame.compareRight ? target : next;
+        }
+    }
+
+    static final class JgFused implements Closure {
+        private final Closure compare;
+        private final int target;
+        private final int next;
+
+        JgFused(Closure compare, int target, int next) {
+            this.compare = compare;
+            this.target = target;
+            this.next = next;
+        }
+
+        @Override
+        public int execute(Frame frame) {
+            compare.execute(frame);
+            return frame.compareLeft > frame.compareRight ? target : next;
+        }
+    }
+
+    static final class JleFused implements Closure {
+        private final Closure compare;
+        private final int target;
+        private final int next;
+
+        JleFused(Closure compare, int target, int next) {
+            this.compare = compare;
+            this.target = target;
+            this.next = next;
+        }
+
+        @Override
+        public int execute(Frame frame) {
+            compare.execute(frame);
+            return frame.compareLeft <= frame.compareRight ? target : next;
+        }
+    }
+
+    static final class JlFused implements Closure {
+        private final Closure compare;
+        private final int target;
+        private final int next;
+
+        JlFused(Closure compare, int target, int next) {
+            this.compare = compare;
+            this.target = target;
+            this.next = next;
+        }
+
+        @Override
+        public int execute(Frame frame) {
+            compare.execute(frame);
+            return frame.compareLeft < frame.compareRight ? target : next;
+        }
+    }
+
+    static final class CountedLoop implements Closure {
+        private final Instruction loop;
+        private final int target;
+        private final int next;
+
+        CountedLoop(Instruction loop, int target, int next) {
+            this.loop = loop;
+            this.target = target;
+            this.next = next;
+        }
+
+        @Override
+        public int execute(Frame frame) {
+            return run(loop, frame) ? target : next;
+        }
+
+        // Also the exit of blocks ending with a LOOP_Jcc
+        static boolean run(Instruction loop, Frame frame) {
+            if (!LoopAccelerator.run(loop, frame.registers)) return false;
+
+            Operand left = loop.operands[0];
+            Operand right = loop.operands[1];
+            frame.compareLeft = left.isRegister() ? frame.registers[left.value] : left.value;
+            frame.compareRight = right.isRegister() ? frame.registers[right.value] : right.value;
+            frame.compared = true;
+            return true;
+        }
+    }
+
+    static final class Call implements Closure {
+        private final int target;
+        private final int next;
+
+        Call(int target, int next) {
+            this.target = target;
+            this.next = next;
+        }
+
+        @Override
+        public int execute(Frame frame) {
+            frame.push(next);
+            return target;
+        }
+    }
+
+    static final class Ret implements Closure {
+        @Override
+        public int execute(Frame frame) {
+            return frame.pop();
+        }
+    }
+
+    static final class End implements Closure {
+        @Override
+        public int execute(Frame frame) {
+            frame.result = frame.output.toString();
+            return Frame.HALT;
+        }
+    }
+
+    static final class MissingLabel implements Closure {
+        private final String label;
+
+        MissingLabel(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public int execute(Frame frame) {
+            throw new RuntimeException("Label " + label + " was fetched but doesn't exist.");
+        }
+    }
+
+    // The interpreter fails on the missing operand once it gets there, so this does too.
+    static final class MissingOperand implements Closure {
+        private final int length;
+
+        MissingOperand(int length) {
+            this.length = length;
+        }
+
+        @Override
+        public int execute(Frame frame) {
+            throw new ArrayIndexOutOfBoundsException("Index " + length + " out of bounds for length " + length);
+        }
+    }
+}
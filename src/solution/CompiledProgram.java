@@ -0,0 +1,98 @@
+package solution;
+
+// A program compiled by BytecodeCompiler. It can either run from the start or take over
+// an interpreter's state at a loop header. Given a continuation, it runs in slices.
+final class CompiledProgram {
+    // Implemented by the generated hidden classes. The return stack holds return site ids rather than instruction indices.
+    interface Code {
+        String execute(int entry, int[] registers, boolean[] defined, int[] stack, int stackSize,
+                       int compareLeft, int compareRight, boolean compared, StringBuilder output, Continuation continuation);
+    }
+
+    // Where a suspended program continues. The registers and their flags stay in the arrays passed to the code.
+    static final class Continuation {
+        private int polls;
+        private boolean suspended;
+
+        private int entry;
+        private int[] stack;
+        private int stackSize;
+        private int compareLeft;
+        private int compareRight;
+        private boolean compared;
+
+        // Called by the code every POLL_INTERVAL backward jumps or calls. Returns whether to suspend.
+        boolean poll() {
+            return --polls <= 0;
+        }
+
+        void suspend(int entry, int[] stack, int stackSize, int compareLeft, int compareRight, boolean compared) {
+            this.suspended = true;
+            this.entry = entry;
+            this.stack = stack;
+            this.stackSize = stackSize;
+            this.compareLeft = compareLeft;
+            this.compareRight = compareRight;
+            this.compared = compared;
+        }
+
+        boolean isSuspended() {
+            return suspended;
+        }
+
+        // Lets the code run until it polled the given number of times.
+        private void start(int polls) {
+            this.polls = polls;
+            this.suspended = false;
+        }
+    }
+
+    private final Code code;
+    private final int registerCount;
+    private final int[] entryIds;
+    private final int[] returnSiteIds;
+
+    CompiledProgram(Code code, int registerCount, int[] entryIds, int[] returnSiteIds) {
+        this.code = code;
+        this.registerCount = registerCount;
+        this.entryIds = entryIds;
+        this.returnSiteIds = returnSiteIds;
+    }
+
+    String run() {
+        return code.execute(0, new int[registerCount], new boolean[registerCount], new int[16], 0, 0, 0, false, new StringBuilder(), null);
+    }
+
+    boolean canResumeAt(int pointer) {
+        return entryIds[pointer] >= 0;
+    }
+
+    // Continues an interpreted execution at pointer, where returnStack holds the interpreter's return addresses.
+    String resume(int pointer, int[] registers, boolean[] defined, int[] returnStack, int stackSize,
+                  int compareLeft, int compareRight, boolean compared, StringBuilder output) {
+        return resume(pointer, registers, defined, returnStack, stackSize, compareLeft, compareRight, compared, output, null, 0);
+    }
+
+    // Like resume, but suspends the program after it polled the given number of times, see resume(Continuation...).
+    String resume(int pointer, int[] registers, boolean[] defined, int[] returnStack, int stackSize,
+                  int compareLeft, int compareRight, boolean compared, StringBuilder output, Continuation continuation, int polls) {
+        int[] stack = new int[Math.max(16, stackSize * 2)];
+        for (int i = 0; i < stackSize; i++) {
+            stack[i] = returnSiteIds[returnStack[i]];
+        }
+
+        if (continuation != null) {
+            continuation.start(polls);
+        }
+
+        return code.execute(entryIds[pointer], registers, defined, stack, stackSize, compareLeft, compareRight, compared, output, continuation);
+    }
+
+    // Continues a suspended program until it ends or polled the given number of times again. The result only
+    // counts if the continuation isn't suspended afterwards.
+    String resume(Continuation continuation, int polls, int[] registers, boolean[] defined, StringBuilder output) {
+        continuation.start(polls);
+        return code.execute(continuation.entry, registers, defined, continuation.stack, continuation.stackSize,
+                continuation.compareLeft, continuation.compareRight, continuation.compared, output, continuation);
+    }
+}
@@ -0,0 +1,138 @@
+package solution;
+
+import java.util.StringJoiner;
+
+// Switches for the optimizations Program.compile applies. Every optimization preserves output and errors,
+// so these only exist to help debugging. Defaults can be changed with system properties.
+public final class CompilerOptions {
+    public static final CompilerOptions DEFAULT = fromSystemProperties();
+
+    public static final CompilerOptions NONE = new CompilerOptions(false, null, false, false, false, false, 0);
+
+    private final boolean fusion;
+    private final PeepholeOptimizer peephole;
+    private final boolean constantFolding;
+    private final boolean loopAcceleration;
+    private final boolean inlining;
+    private final boolean tailCalls;
+    private final int evaluationBudget;
+
+    private CompilerOptions(boolean fusion, PeepholeOptimizer peephole, boolean constantFolding, boolean loopAcceleration,
+                            boolean inlining, boolean tailCalls, int evaluationBudget) {
+        this.fusion = fusion;
+        this.peephole = peephole;
+        this.constantFolding = constantFolding;
+        this.loopAcceleration = loopAcceleration;
+        this.inlining = inlining;
+        this.tailCalls = tailCalls;
+        this.evaluationBudget = evaluationBudget;
+    }
+
+    // Everything on, except what the system properties turn off as they are now. DEFAULT reads them once at startup.
+    public static CompilerOptions fromSystemProperties() {
+        return new CompilerOptions(
+                flag("assembly.fusion"),
+                flag("assembly.peephole") ? PeepholeOptimizer.defaults() : null,
+                flag("assembly.constants"),
+                flag("assembly.loops"),
+                flag("assembly.inlining"),
+                flag("assembly.tailCalls"),
+                Integer.getInteger("assembly.evaluationBudget", 100_000));
+    }
+
+    // Fuses CMP + Jcc pairs and INC/DEC + CMP + Jcc triples into single instructions.
+    public CompilerOptions withFusion(boolean fusion) {
+        return new CompilerOptions(fusion, peephole, constantFolding, loopAcceleration, inlining, tailCalls, evaluationBudget);
+    }
+
+    // Rewrites redundant instruction sequences with PeepholeOptimizer, keeping the optimizer if there already is one.
+    public CompilerOptions withPeephole(boolean peephole) {
+        if (peephole == isPeephole()) return this;
+
+        return withPeephole(peephole ? PeepholeOptimizer.defaults() : null);
+    }
+
+    // Rewrites with the given optimizer, or not at all for null. Its rule hits add up over every compiled program.
+    public CompilerOptions withPeephole(PeepholeOptimizer peephole) {
+        return new CompilerOptions(fusion, peephole, constantFolding, loopAcceleration, inlining, tailCalls, evaluationBudget);
+    }
+
+    // Computes values known at compile time with ConstantFolder and drops the code that becomes unnecessary.
+    public CompilerOptions withConstantFolding(boolean constantFolding) {
+        return new CompilerOptions(fusion, peephole, constantFolding, loopAcceleration, inlining, tailCalls, evaluationBudget);
+    }
+
+    // Skips over loops that only count with LoopAccelerator, by computing their result.
+    public CompilerOptions withLoopAcceleration(boolean loopAcceleration) {
+        return new CompilerOptions(fusion, peephole, constantFolding, loopAcceleration, inlining, tailCalls, evaluationBudget);
+    }
+
+    // Replaces CALLs of small subroutines with a copy of their code, see Inliner.
+    public CompilerOptions withInlining(boolean inlining) {
+        return new CompilerOptions(fusion, peephole, constantFolding, loopAcceleration, inlining, tailCalls, evaluationBudget);
+    }
+
+    // Turns CALLs that are directly followed by a RET into JMPs, see TailCalls.
+    public CompilerOptions withTailCalls(boolean tailCalls) {
+        return new CompilerOptions(fusion, peephole, constantFolding, loopAcceleration, inlining, tailCalls, evaluationBudget);
+    }
+
+    // Runs programs for up to this many instructions while compiling them, see PartialEvaluator. 0 turns this off.
+    public CompilerOptions withEvaluationBudget(int evaluationBudget) {
+        if (evaluationBudget < 0) {
+            throw new IllegalArgumentException("The evaluation budget can't be negative.");
+        }
+
+        return new CompilerOptions(fusion, peephole, constantFolding, loopAcceleration, inlining, tailCalls, evaluationBudget);
+    }
+
+    public boolean isFusion() {
+        return fusion;
+    }
+
+    public boolean isPeephole() {
+        return peephole != null;
+    }
+
+    public PeepholeOptimizer getPeepholeOptimizer() {
+        return peephole;
+    }
+
+    public boolean isConstantFolding() {
+        return constantFolding;
+    }
+
+    public boolean isLoopAcceleration() {
+        return loopAcceleration;
+    }
+
+    public boolean isInlining() {
+        return inlining;
+    }
+
+    public boolean isTailCalls() {
+        return tailCalls;
+    }
+
+    public int getEvaluationBudget() {
+        return evaluationBudget;
+    }
+
+    // The optimizations that are on, for test failures and logs
+    @Override
+    public String toString() {
+        StringJoiner on = new StringJoiner(", ", "CompilerOptions[", "]");
+        if (fusion) on.add("fusion");
+        if (peephole != null) on.add("peephole");
+        if (constantFolding) on.add("constantFolding");
+        if (loopAcceleration) on.add("loopAcceleration");
+        if (inlining) on.add("inlining");
+        if (tailCalls) on.add("tailCalls");
+        if (evaluationBudget > 0) on.add("evaluationBudget=" + evaluationBudget);
+        return on.toString();
+    }
+
+    private static boolean flag(String property) {
+        return Boolean.parseBoolean(System.getProperty(property, "true"));
+    }
+}
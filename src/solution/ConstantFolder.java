@@ -0,0 +1,389 @@
+package solution;
+
+import java.util.*;
+
+// Propagates register and compare values that are known at compile time through the program's control flow.
+// Arithmetic on known values becomes a MOV of the result, known register operands become immediates and
+// conditional jumps with a known outcome become a JMP or disappear. Instructions that can't be reached anymore are
+// dropped, as are writes nothing reads afterwards, as long as they can't fail.
+// A register only counts as known if every path to it wrote the same value, so folding never hides a read of a
+// register that doesn't exist. Runs before Fusion, so there are no superinstructions yet.
+final class ConstantFolder {
+    // Dead code removal only ever shrinks the program, this just bounds the work on pathological inputs.
+    private static final int MAX_ROUNDS = 16;
+
+    private final Instruction[] instructions;
+    private final int registerCount;
+
+    // Slots for the compare values follow the registers
+    private final int compareLeft;
+    private final int compareRight;
+
+    private ConstantFolder(Instruction[] instructions, int registerCount) {
+        this.instructions = instructions;
+        this.registerCount = registerCount;
+        this.compareLeft = registerCount;
+        this.compareRight = registerCount + 1;
+    }
+
+    static Instruction[] fold(Instruction[] instructions, int registerCount) {
+        instructions = compact(new ConstantFolder(instructions, registerCount).propagate());
+
+        for (int round = 0; round < MAX_ROUNDS; round++) {
+            Instruction[] live = removeDeadWrites(instructions, registerCount);
+            if (live == null) break;
+
+            instructions = live;
+        }
+
+        return instructions;
+    }
+
+    // Returns the rewritten instructions, with null for the ones to drop.
+    private Instruction[] propagate() {
+        State[] before = new State[instructions.length + 1];
+        List<Integer> returnSites = DefinedRegisters.returnSites(instructions);
+
+        // Nothing is written or compared yet
+        before[0] = new State(registerCount + 2);
+
+        ArrayDeque<Integer> worklist = new ArrayDeque<>();
+        worklist.add(0);
+        while (!worklist.isEmpty()) {
+            int i = worklist.poll();
+            if (i >= instructions.length) continue;
+
+            State after = transfer(instructions[i], before[i]);
+            for (int successor : successors(i, before[i], returnSites)) {
+                if (before[successor] == null) {
+                    before[successor] = after.copy();
+                    worklist.add(successor);
+                } else if (before[successor].mergeFrom(after)) {
+                    worklist.add(successor);
+                }
+            }
+        }
+
+        Instruction[] rewritten = new Instruction[instructions.length];
+        for (int i = 0; i < instructions.length; i++) {
+            if (before[i] != null) {
+                rewritten[i] = rewrite(i, before[i]);
+            }
+        }
+
+        return rewritten;
+    }
+
+    private List<Integer> successors(int index, State state, List<Integer> returnSites) {
+        Instruction instruction = instructions[index];
+        if (isMalformed(instruction)) return List.of();
+
+        if (isConditionalJump(instruction) && instruction.target >= 0 && state.isKnown(compareLeft) && state.isKnown(compareRight)) {
+            return List.of(isTaken(instruction.function, state.get(compareLeft), state.get(compareRight)) ? instruction.target : index + 1);
+        }
+
+        return DefinedRegisters.successors(instruction, index, returnSites);
+    }
+
+    private State transfer(Instruction instruction, State before) {
+        if (isMalformed(instruction)) return before;
+
+        Operand[] operands = instruction.operands;
+        State after = before.copy();
+        switch (instruction.function) {
+            case MOV, INC, DEC, ADD, SUB, MUL, DIV -> {
+                Integer value = evaluate(instruction, before);
+                if (value != null) {
+                    after.set(operands[0].value, value);
+                } else {
+                    after.forget(operands[0].value);
+                }
+            }
+            case CMP -> {
+                setOrForget(after, compareLeft, value(operands[0], before));
+                setOrForget(after, compareRight, value(operands[1], before));
+            }
+        }
+
+        return after;
+    }
+
+    private Instruction rewrite(int index, State before) {
+        Instruction instruction = instructions[index];
+        if (isMalformed(instruction)) return instruction;
+
+        Operand[] operands = instruction.operands;
+        return switch (instruction.function) {
+            case MOV, INC, DEC, ADD, SUB, MUL, DIV -> {
+                Integer value = evaluate(instruction, before);
+                if (value != null) {
+                    yield new Instruction(Function.MOV, new Operand[]{operands[0], immediate(value)}, -1, null, instruction.line);
+                }
+
+                yield withKnownOperands(instruction, 1, before);
+            }
+            case CMP -> withKnownOperands(instruction, 0, before);
+            case MSG -> withKnownOperands(instruction, 0, before);
+            case JNE, JE, JGE, JG, JLE, JL -> {
+                if (instruction.target < 0 || !before.isKnown(compareLeft) || !before.isKnown(compareRight)) yield instruction;
+
+                if (isTaken(instruction.function, before.get(compareLeft), before.get(compareRight))) {
+                    yield new Instruction(Function.JMP, instruction.operands, instruction.target, instruction.label, instruction.line);
+                }
+
+                yield null;
+            }
+            default -> instruction;
+        };
+    }
+
+    // The value the instruction writes to its register, if it's known and the instruction can't fail.
+    private Integer evaluate(Instruction instruction, State before) {
+        Operand[] operands = instruction.operands;
+        if (instruction.function == Function.MOV) {
+            return value(operands[1], before);
+        }
+
+        Integer current = value(operands[0], before);
+        if (current == null) return null;
+
+        if (instruction.function == Function.INC) return current + 1;
+        if (instruction.function == Function.DEC) return current - 1;
+
+        Integer operand = value(operands[1], before);
+        if (operand == null) return null;
+
+        return switch (instruction.function) {
+            case ADD -> current + operand;
+            case SUB -> current - operand;
+            case MUL -> current * operand;
+            default -> operand == 0 ? null : current / operand;
+        };
+    }
+
+    private Integer value(Operand operand, State state) {
+        if (!operand.isRegister()) {
+            return operand.value;
+        }
+
+        return state.isKnown(operand.value) ? state.get(operand.value) : null;
+    }
+
+    // Replaces known registers from the given operand on with immediates.
+    private Instruction withKnownOperands(Instruction instruction, int from, State before) {
+        Operand[] operands = instruction.operands;
+        Operand[] replaced = null;
+        for (int i = from; i < operands.length; i++) {
+            if (operands[i].isRegister() && before.isKnown(operands[i].value)) {
+                if (replaced == null) {
+                    replaced = operands.clone();
+                }
+
+                replaced[i] = immediate(before.get(operands[i].value));
+            }
+        }
+
+        return replaced == null ? instruction : new Instruction(instruction.function, replaced, instruction.target, instruction.label, instruction.line);
+    }
+
+    private static void setOrForget(State state, int slot, Integer value) {
+        if (value != null) {
+            state.set(slot, value);
+        } else {
+            state.forget(slot);
+        }
+    }
+
+    private static boolean isTaken(Function function, int left, int right) {
+        return switch (function) {
+            case JNE -> left != right;
+            case JE -> left == right;
+            case JGE -> left >= right;
+            case JG -> left > right;
+            case JLE -> left <= right;
+            default -> left < right;
+        };
+    }
+
+    private static boolean isConditionalJump(Instruction instruction) {
+        return switch (instruction.function) {
+            case JNE, JE, JGE, JG, JLE, JL -> true;
+            default -> false;
+        };
+    }
+
+    private static boolean isMalformed(Instruction instruction) {
+        return instruction.operands.length < instruction.function.getOperandCount();
+    }
+
+    // Drops writes to registers or compare values that no path reads before they are overwritten.
+    // Returns null if there are none.
+    private static Instruction[] removeDeadWrites(Instruction[] instructions, int registerCount) {
+        BitSet[] liveAfter = liveAfter(instructions, registerCount);
+        BitSet[] defined = DefinedRegisters.analyze(instructions, registerCount);
+
+        Instruction[] live = instructions.clone();
+        boolean changed = false;
+        for (int i = 0; i < instructions.length; i++) {
+            Instruction instruction = instructions[i];
+            int written = written(instruction, registerCount);
+            if (written < 0 || liveAfter[i].get(written) || defined[i] == null || !cannotFail(instruction, defined[i])) continue;
+
+            live[i] = null;
+            changed = true;
+        }
+
+        return changed ? compact(live) : null;
+    }
+
+    // Backward liveness of registers and, as the slot after them, of the compare values.
+    private static BitSet[] liveAfter(Instruction[] instructions, int registerCount) {
+        List<Integer> returnSites = DefinedRegisters.returnSites(instructions);
+        BitSet[] liveBefore = new BitSet[instructions.length + 1];
+        BitSet[] liveAfter = new BitSet[instructions.length];
+        for (int i = 0; i <= instructions.length; i++) {
+            liveBefore[i] = new BitSet();
+        }
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = instructions.length - 1; i >= 0; i--) {
+                Instruction instruction = instructions[i];
+                BitSet after = new BitSet();
+                if (!isMalformed(instruction)) {
+                    for (int successor : DefinedRegisters.successors(instruction, i, returnSites)) {
+                        after.or(liveBefore[successor]);
+                    }
+                }
+
+                BitSet before = (BitSet) after.clone();
+                int written = written(instruction, registerCount);
+                if (written >= 0) {
+                    before.clear(written);
+                }
+
+                for (int read : read(instruction, registerCount)) {
+                    before.set(read);
+                }
+
+                liveAfter[i] = after;
+                if (!before.equals(liveBefore[i])) {
+                    liveBefore[i] = before;
+                    changed = true;
+                }
+            }
+        }
+
+        return liveAfter;
+    }
+
+    private static int written(Instruction instruction, int registerCount) {
+        if (isMalformed(instruction)) return -1;
+        if (instruction.function == Function.CMP) return registerCount;
+
+        return DefinedRegisters.writesRegister(instruction) ? instruction.operands[0].value : -1;
+    }
+
+    private static List<Integer> read(Instruction instruction, int registerCount) {
+        if (isMalformed(instruction)) return List.of();
+        if (isConditionalJump(instruction)) return List.of(registerCount);
+
+        ArrayList<Integer> slots = new ArrayList<>();
+        for (Operand operand : DefinedRegisters.reads(instruction)) {
+            slots.add(operand.value);
+        }
+
+        return slots;
+    }
+
+    private static boolean cannotFail(Instruction instruction, BitSet defined) {
+        if (instruction.function == Function.MOV) return true;
+
+        for (Operand operand : DefinedRegisters.reads(instruction)) {
+            if (!defined.get(operand.value)) return false;
+        }
+
+        if (instruction.function != Function.DIV) return true;
+
+        Operand divisor = instruction.operands[1];
+        return !divisor.isRegister() && divisor.value != 0;
+    }
+
+    // Removes the null entries and renumbers jump targets. A target that was removed now means the next
+    // instruction that is left, which is where execution would have continued.
+    private static Instruction[] compact(Instruction[] instructions) {
+        int[] newIndex = new int[instructions.length + 1];
+        int size = 0;
+        for (int i = 0; i < instructions.length; i++) {
+            newIndex[i] = size;
+            if (instructions[i] != null) size++;
+        }
+
+        newIndex[instructions.length] = size;
+
+        Instruction[] compacted = new Instruction[size];
+        for (int i = 0; i < instructions.length; i++) {
+            Instruction instruction = instructions[i];
+            if (instruction == null) continue;
+
+            compacted[newIndex[i]] = instruction.target < 0 ? instruction : instruction.withTarget(newIndex[instruction.target]);
+        }
+
+        return compacted;
+    }
+
+    private static Operand immediate(int value) {
+        return new Operand(Operand.Kind.IMMEDIATE, value, Integer.toString(value));
+    }
+
+    // Known values at one point of the program. Slots that aren't known may hold anything, or nothing at all.
+    private static final class State {
+        private final BitSet known;
+        private final int[] values;
+
+        State(int size) {
+            known = new BitSet(size);
+            values = new int[size];
+        }
+
+        private State(BitSet known, int[] values) {
+            this.known = known;
+            this.values = values;
+        }
+
+        State copy() {
+            return new State((BitSet) known.clone(), values.clone());
+        }
+
+        boolean isKnown(int slot) {
+            return known.get(slot);
+        }
+
+        int get(int slot) {
+            return values[slot];
+        }
+
+        void set(int slot, int value) {
+            known.set(slot);
+            values[slot] = value;
+        }
+
+        void forget(int slot) {
+            known.clear(slot);
+        }
+
+        // Keeps only what both states agree on. Returns whether anything was forgotten.
+        boolean mergeFrom(State other) {
+            boolean changed = false;
+            for (int slot = known.nextSetBit(0); slot >= 0; slot = known.nextSetBit(slot + 1)) {
+                if (!other.known.get(slot) || other.values[slot] != values[slot]) {
+                    known.clear(slot);
+                    changed = true;
+                }
+            }
+
+            return changed;
+        }
+    }
+}
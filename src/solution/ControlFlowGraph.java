@@ -0,0 +1,248 @@
+package solution;
+
+import java.util.*;
+
+// Splits a Program into basic blocks. Blocks start at the program start, at jump targets and after any jump,
+// CALL, RET or END, and are only entered at their first instruction.
+// Successors follow execution: a CALL block continues at its callee, and RET blocks return to every return site,
+// since which one is only known at runtime. The callee and return site of each call are also recorded separately.
+public final class ControlFlowGraph {
+    private final Program program;
+    private final List<Block> blocks;
+    private final Block[] blockAt;
+
+    private ControlFlowGraph(Program program) {
+        this.program = program;
+
+        Instruction[] instructions = program.getInstructions();
+        BitSet leaders = leaders(instructions);
+
+        ArrayList<Block> blocks = new ArrayList<>();
+        blockAt = new Block[instructions.length + 1];
+        for (int start = leaders.nextSetBit(0); start >= 0 && start < instructions.length; ) {
+            int end = leaders.nextSetBit(start + 1);
+            Block block = new Block(this, blocks.size(), start, end);
+            blocks.add(block);
+            Arrays.fill(blockAt, start, end, block);
+            start = end;
+        }
+
+        this.blocks = Collections.unmodifiableList(blocks);
+        link(instructions);
+    }
+
+    public static ControlFlowGraph build(Program program) {
+        return new ControlFlowGraph(program);
+    }
+
+    public Program getProgram() {
+        return program;
+    }
+
+    public List<Block> getBlocks() {
+        return blocks;
+    }
+
+    // The block execution starts in, or null for an empty program.
+    public Block getEntry() {
+        return blocks.isEmpty() ? null : blocks.get(0);
+    }
+
+    // The block containing the given instruction, or null for the end of the program.
+    public Block getBlockAt(int instruction) {
+        return blockAt[instruction];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Block block : blocks) {
+            builder.append(block).append(block.isReachable() ? "" : " (unreachable)").append(" ->");
+            for (Block successor : block.successors) {
+                builder.append(' ').append(successor.getName());
+            }
+
+            if (block.fallsOffEnd) {
+                builder.append(" end");
+            }
+
+            builder.append('\n');
+            for (int i = block.start; i < block.end; i++) {
+                builder.append("    ").append(i).append(": ").append(program.getInstructions()[i]).append('\n');
+            }
+        }
+
+        return builder.toString();
+    }
+
+    private static BitSet leaders(Instruction[] instructions) {
+        BitSet leaders = new BitSet(instructions.length + 1);
+        leaders.set(0);
+        leaders.set(instructions.length);
+
+        for (int i = 0; i < instructions.length; i++) {
+            Instruction instruction = instructions[i];
+            if (endsBlock(instruction)) {
+                leaders.set(i + 1);
+            }
+
+            if (instruction.function.isJump() && instruction.target >= 0) {
+                leaders.set(instruction.target);
+            }
+
+            if (instruction.function.isFused()) {
+                leaders.set(i + 1 + instruction.function.getSkip());
+            }
+        }
+
+        return leaders;
+    }
+
+    static boolean endsBlock(Instruction instruction) {
+        return instruction.function.isJump() || instruction.function == Function.RET || instruction.function == Function.END;
+    }
+
+    private void link(Instruction[] instructions) {
+        ArrayList<Block> returnSites = new ArrayList<>();
+        for (int i = 0; i < instructions.length; i++) {
+            if (instructions[i].function == Function.CALL && instructions[i].target >= 0) {
+                returnSites.add(blockAt[i + 1]);
+            }
+        }
+
+        for (Block block : blocks) {
+            int last = block.end - 1;
+            Instruction instruction = instructions[last];
+
+            // Jumps to missing labels always fail, so they have no successors at all.
+            if (instruction.function.isJump() && instruction.target < 0) continue;
+
+            switch (instruction.function) {
+                case JMP -> block.addSuccessor(blockAt[instruction.target]);
+                case JNE, JE, JGE, JG, JLE, JL, LOOP_JNE, LOOP_JE, LOOP_JGE, LOOP_JG, LOOP_JLE, LOOP_JL -> {
+                    block.addSuccessor(blockAt[block.end]);
+                    block.addSuccessor(blockAt[instruction.target]);
+                }
+                case CALL -> {
+                    block.callee = blockAt[instruction.target];
+                    block.returnSite = blockAt[block.end];
+                    block.addSuccessor(block.callee);
+                }
+                case RET -> {
+                    for (Block site : returnSites) {
+                        block.addSuccessor(site);
+                    }
+                }
+                case END -> {
+                }
+                default -> {
+                    if (instruction.function.isFused()) {
+                        block.addSuccessor(blockAt[block.end + instruction.function.getSkip()]);
+                        block.addSuccessor(blockAt[instruction.target]);
+                    } else {
+                        block.addSuccessor(blockAt[block.end]);
+                    }
+                }
+            }
+        }
+
+        ArrayDeque<Block> worklist = new ArrayDeque<>();
+        if (!blocks.isEmpty()) {
+            blocks.get(0).reachable = true;
+            worklist.add(blocks.get(0));
+        }
+
+        while (!worklist.isEmpty()) {
+            for (Block successor : worklist.poll().successors) {
+                if (!successor.reachable) {
+                    successor.reachable = true;
+                    worklist.add(successor);
+                }
+            }
+        }
+    }
+
+    public static final class Block {
+        private final ControlFlowGraph graph;
+        private final int index;
+        private final int start;
+        private final int end;
+
+        private final List<Block> successors = new ArrayList<>(2);
+        private final List<Block> predecessors = new ArrayList<>(2);
+        private Block callee;
+        private Block returnSite;
+        private boolean fallsOffEnd;
+        private boolean reachable;
+
+        private Block(ControlFlowGraph graph, int index, int start, int end) {
+            this.graph = graph;
+            this.index = index;
+            this.start = start;
+            this.end = end;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getName() {
+            return "B" + index;
+        }
+
+        // Index of the first instruction
+        public int getStart() {
+            return start;
+        }
+
+        // Index after the last instruction
+        public int getEnd() {
+            return end;
+        }
+
+        public List<Block> getSuccessors() {
+            return Collections.unmodifiableList(successors);
+        }
+
+        public List<Block> getPredecessors() {
+            return Collections.unmodifiableList(predecessors);
+        }
+
+        // The block a CALL at the end of this block jumps to, otherwise null.
+        public Block getCallee() {
+            return callee;
+        }
+
+        // The block a CALL at the end of this block returns to, otherwise null.
+        public Block getReturnSite() {
+            return returnSite;
+        }
+
+        // Whether execution can continue past the last instruction of the program from here.
+        public boolean fallsOffEnd() {
+            return fallsOffEnd;
+        }
+
+        public boolean isReachable() {
+            return reachable;
+        }
+
+        Instruction getLast() {
+            return graph.program.getInstructions()[end - 1];
+        }
+
+        @Override
+        public String toString() {
+            return getName() + " [" + start + ", " + end + ")";
+        }
+
+        private void addSuccessor(Block successor) {
+            if (successor == null) {
+                fallsOffEnd = true;
+            } else if (!successors.contains(successor)) {
+                successors.add(successor);
+                successor.predecessors.add(this);
+            }
+        }
+    }
+}
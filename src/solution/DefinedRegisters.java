@@ -0,0 +1,121 @@
+package solution;
+
+import java.util.*;
+
+// Forward must-be-defined analysis over a program's instructions. RET is assumed to return to any call site.
+// The compare values count as one more register after the real ones, which a CMP writes.
+final class DefinedRegisters {
+    private DefinedRegisters() {
+    }
+
+    // Returns the registers that are certainly written before each instruction, or null for instructions that
+    // can't be reached. The extra last element is for falling off the end. Bit registerCount is set where a CMP
+    // certainly ran, so conditional jumps there can't fail for lack of one.
+    static BitSet[] analyze(Instruction[] instructions, int registerCount) {
+        BitSet[] before = new BitSet[instructions.length + 1];
+        List<Integer> returnSites = returnSites(instructions);
+
+        ArrayDeque<Integer> worklist = new ArrayDeque<>();
+        before[0] = new BitSet(registerCount);
+        worklist.add(0);
+
+        while (!worklist.isEmpty()) {
+            int i = worklist.poll();
+            if (i >= instructions.length) continue;
+
+            Instruction instruction = instructions[i];
+            BitSet after = (BitSet) before[i].clone();
+            if (isCopy(instruction)) {
+                // The target of a MOV from a register is only defined if the source is
+                after.set(instruction.operands[0].value, before[i].get(instruction.operands[1].value));
+            } else if (writesRegister(instruction)) {
+                after.set(instruction.operands[0].value);
+            }
+
+            if (instruction.function == Function.CMP || instruction.function.isCompareJump()) {
+                after.set(registerCount);
+            }
+
+            for (int successor : successors(instruction, i, returnSites)) {
+                if (before[successor] == null) {
+                    before[successor] = after;
+                    worklist.add(successor);
+                } else {
+                    BitSet merged = (BitSet) before[successor].clone();
+                    merged.and(after);
+                    if (!merged.equals(before[successor])) {
+                        before[successor] = merged;
+                        worklist.add(successor);
+                    }
+                }
+            }
+        }
+
+        return before;
+    }
+
+    // The instructions following each CALL, where any RET may continue.
+    static List<Integer> returnSites(Instruction[] instructions) {
+        ArrayList<Integer> returnSites = new ArrayList<>();
+        for (int i = 0; i < instructions.length; i++) {
+            if (instructions[i].function == Function.CALL) {
+                returnSites.add(i + 1);
+            }
+        }
+
+        return returnSites;
+    }
+
+    // Where execution may continue after the instruction at index. CALL continues at its target, which returns to
+    // one of the return sites. Superinstructions are treated as their first instruction, so they continue with the
+    // next one; the original instructions after them have the same effect on the way to the same successors.
+    static List<Integer> successors(Instruction instruction, int index, List<Integer> returnSites) {
+        return instruction.function.isFused() ? List.of(index + 1) : switch (instruction.function) {
+            case JMP, CALL -> instruction.target >= 0 ? List.of(instruction.target) : List.of();
+            case JNE, JE, JGE, JG, JLE, JL -> instruction.target >= 0 ? List.of(index + 1, instruction.target) : List.of();
+            case LOOP_JNE, LOOP_JE, LOOP_JGE, LOOP_JG, LOOP_JLE, LOOP_JL -> List.of(index + 1, instruction.target);
+            case RET -> returnSites;
+            case END -> List.of();
+            default -> List.of(index + 1);
+        };
+    }
+
+    static boolean writesRegister(Instruction instruction) {
+        if (instruction.operands.length == 0) return false;
+
+        return switch (instruction.function) {
+            case MOV, INC, DEC, ADD, SUB, MUL, DIV, STEP_JNE, STEP_JE, STEP_JGE, STEP_JG, STEP_JLE, STEP_JL -> true;
+            default -> false;
+        };
+    }
+
+    // A MOV from a register, which copies whether the register exists instead of failing if it doesn't
+    static boolean isCopy(Instruction instruction) {
+        return instruction.function == Function.MOV && instruction.operands.length >= 2 && instruction.operands[1].isRegister();
+    }
+
+    // The register operands an instruction reads
+    static List<Operand> reads(Instruction instruction) {
+        Operand[] operands = instruction.operands;
+        ArrayList<Operand> reads = new ArrayList<>();
+
+        switch (instruction.function) {
+            case MOV -> reads.add(operands[1]);
+            case INC, DEC -> reads.add(operands[0]);
+            case ADD, SUB, MUL, DIV, CMP -> {
+                reads.add(operands[0]);
+                reads.add(operands[1]);
+            }
+            case MSG -> reads.addAll(Arrays.asList(operands));
+            case CMP_JNE, CMP_JE, CMP_JGE, CMP_JG, CMP_JLE, CMP_JL -> {
+                reads.add(operands[0]);
+                reads.add(operands[1]);
+            }
+            case STEP_JNE, STEP_JE, STEP_JGE, STEP_JG, STEP_JLE, STEP_JL -> reads.add(operands[0]);
+            case LOOP_JNE, LOOP_JE, LOOP_JGE, LOOP_JG, LOOP_JLE, LOOP_JL -> reads.addAll(Arrays.asList(operands));
+        }
+
+        reads.removeIf(operand -> !operand.isRegister());
+        return reads;
+    }
+}
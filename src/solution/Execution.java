@@ -0,0 +1,133 @@
+package solution;
+
+import java.util.function.Supplier;
+
+// A program running one slice at a time, for at most a budget of instructions. It starts out in the block engine,
+// where its whole state between slices is the frame and the block to continue at. Without a budget, a program that
+// keeps running switches to compiled code at a loop header, which from then on suspends itself at loop headers.
+// Either way each slice may run on a different thread, as long as they run one after another.
+final class Execution {
+    // Budget that means the program runs until it ends
+    static final long UNLIMITED = Long.MAX_VALUE;
+
+    // Instructions run in the block engine before switching to compiled code
+    private static final long COMPILE_THRESHOLD = 100_000;
+
+    // Blocks run past the end of a slice to reach a loop header where compiled code can take over
+    private static final int MAX_EXTRA_BLOCKS = 64;
+
+    private final BlockProgram program;
+    private final Frame frame;
+    private int block;
+    private long budget;
+    private boolean exhausted;
+
+    // Compiles the program on demand, or null once it was or if it stays in the block engine
+    private Supplier<CompiledProgram> compiler;
+    private CompiledProgram compiled;
+    private CompiledProgram.Continuation continuation;
+    private boolean ended;
+
+    Execution(BlockProgram program, long budget) {
+        this(program, budget, null);
+    }
+
+    Execution(BlockProgram program, long budget, Supplier<CompiledProgram> compiler) {
+        this.program = program;
+        this.frame = program.newFrame();
+        this.budget = budget;
+
+        // Compiled code doesn't count instructions
+        this.compiler = budget == UNLIMITED ? compiler : null;
+    }
+
+    // Runs about slice instructions, at least one block unless the budget is used up. Returns whether the program
+    // is done, either because it ended or because the next block would take it past the budget.
+    boolean run(long slice) {
+        if (compiled != null) return runCompiled(slice);
+
+        BlockProgram program = this.program;
+        int count = program.getBlockCount();
+
+        int block = this.block;
+        long budget = this.budget;
+        while (block < count && slice > 0) {
+            BlockProgram.Block next = program.getBlock(block);
+            int size = next.getSize();
+            if (size > budget) {
+                exhausted = true;
+                break;
+            }
+
+            budget -= size;
+            slice -= size;
+            block = next.execute(frame);
+        }
+
+        this.block = block;
+        this.budget = budget;
+        if (block < count && !exhausted && compiler != null && UNLIMITED - budget >= COMPILE_THRESHOLD) {
+            tierUp();
+        }
+
+        return this.block >= count || exhausted;
+    }
+
+    // The outcome once the program is done
+    ExecutionResult getResult() {
+        return exhausted ? ExecutionResult.budgetExhausted(frame.output.toString()) : ExecutionResult.completed(frame.result);
+    }
+
+    // Runs a few more blocks to reach a loop header where compiled code can take over, and tries again after the
+    // next slice if there is none.
+    private void tierUp() {
+        CompiledProgram candidate = compiler.get();
+        if (candidate == null) {
+            compiler = null;
+            return;
+        }
+
+        int count = program.getBlockCount();
+        for (int i = 0; block < count; i++) {
+            if (candidate.canResumeAt(program.getStart(block))) {
+                compiled = candidate;
+                compiler = null;
+                return;
+            }
+
+            if (i == MAX_EXTRA_BLOCKS) return;
+
+            BlockProgram.Block next = program.getBlock(block);
+            budget -= next.getSize();
+            block = next.execute(frame);
+        }
+    }
+
+    private boolean runCompiled(long slice) {
+        if (ended) return true;
+
+        // Compiled code polls every POLL_INTERVAL backward jumps or calls, each of which takes at least one instruction.
+        int polls = (int) Math.min(Integer.MAX_VALUE, Math.max(1, slice / BytecodeCompiler.POLL_INTERVAL));
+
+        String result;
+        if (continuation == null) {
+            // The block engine returns to blocks, compiled code to instructions
+            int[] returnStack = new int[frame.stackSize];
+            for (int i = 0; i < returnStack.length; i++) {
+                returnStack[i] = program.getStart(frame.stack[i]);
+            }
+
+            continuation = new CompiledProgram.Continuation();
+            result = compiled.resume(program.getStart(block), frame.registers, frame.defined, returnStack, frame.stackSize,
+                    frame.compareLeft, frame.compareRight, frame.compared, frame.output, continuation, polls);
+        } else {
+            result = compiled.resume(continuation, polls, frame.registers, frame.defined, frame.output);
+        }
+
+        if (continuation.isSuspended()) return false;
+
+        frame.result = result;
+        ended = true;
+        return true;
+    }
+}
@@ -0,0 +1,23 @@
+package solution;
+
+// The outcome of running one program: its output, which is null for programs without END, or the exception it
+// failed with. Programs that ran out of instruction budget have what they output so far.
+public record ExecutionResult(Status status, String output, RuntimeException error) {
+    public enum Status {
+        COMPLETED,
+        FAILED,
+        BUDGET_EXHAUSTED
+    }
+
+    static ExecutionResult completed(String output) {
+        return new ExecutionResult(Status.COMPLETED, output, null);
+    }
+
+    static ExecutionResult failed(RuntimeException error) {
+        return new ExecutionResult(Status.FAILED, null, error);
+    }
+
+    static ExecutionResult budgetExhausted(String partialOutput) {
+        return new ExecutionResult(Status.BUDGET_EXHAUSTED, partialOutput, null);
+    }
+}
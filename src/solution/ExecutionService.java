@@ -0,0 +1,113 @@
+package solution;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+// Runs programs asynchronously, each as its own task on an ExecutorService. Cancelling a program's future or
+// letting its timeout pass interrupts the thread running it, and the interpreter and compiled code stop at their
+// next backward jump or call, so a program that never ends doesn't keep its thread.
+// Closing the service shuts down its executor, which stops the programs still running the same way.
+public final class ExecutionService implements AutoCloseable {
+    private final TieredEngine engine;
+    private final ExecutorService executor;
+
+    // Uses a virtual thread per program on JDKs that have them, and a cached thread pool otherwise.
+    public ExecutionService() {
+        this(new TieredEngine(), defaultExecutor());
+    }
+
+    public ExecutionService(ExecutorService executor) {
+        this(new TieredEngine(), executor);
+    }
+
+    public ExecutionService(TieredEngine engine, ExecutorService executor) {
+        this.engine = engine;
+        this.executor = executor;
+    }
+
+    public CompletableFuture<String> submit(String source) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        Task task = new Task(source, result);
+        result.whenComplete((output, error) -> {
+            if (error != null) task.interrupt();
+        });
+
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+
+        return result;
+    }
+
+    // The future fails with a TimeoutException if the program doesn't finish in time, counted from submission.
+    public CompletableFuture<String> submit(String source, Duration timeout) {
+        return submit(source).orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    // Looked up at runtime, as Executors.newVirtualThreadPerTaskExecutor only exists from JDK 21 on.
+    private static ExecutorService defaultExecutor() {
+        try {
+            return (ExecutorService) MethodHandles.publicLookup()
+                    .findStatic(Executors.class, "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class))
+                    .invoke();
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return Executors.newCachedThreadPool();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Executor couldn't be created.", e);
+        }
+    }
+
+    private final class Task implements Runnable {
+        private final String source;
+        private final CompletableFuture<String> result;
+
+        // Guarded by this, so an interrupt can't reach the thread once it moved on to another task
+        private Thread runner;
+        private boolean interrupted;
+
+        Task(String source, CompletableFuture<String> result) {
+            this.source = source;
+            this.result = result;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (result.isDone()) return;
+                runner = Thread.currentThread();
+            }
+
+            try {
+                result.complete(engine.interpret(source));
+            } catch (RuntimeException | Error e) {
+                result.completeExceptionally(e);
+            } finally {
+                synchronized (this) {
+                    runner = null;
+                    if (interrupted) Thread.interrupted();
+                }
+            }
+        }
+
+        // Called once the future is done without an output. A program failing on its own finishes in any case.
+        synchronized void interrupt() {
+            if (runner != null && runner != Thread.currentThread()) {
+                runner.interrupt();
+                interrupted = true;
+            }
+        }
+    }
+}
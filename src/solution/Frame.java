@@ -0,0 +1,53 @@
+package solution;
+
+import java.util.*;
+
+// Execution state for the engines that run programs as precompiled closures rather than through Machine.
+final class Frame {
+    // Returned instead of the next instruction or block once END was reached
+    static final int HALT = Integer.MAX_VALUE;
+
+    final int[] registers;
+    final boolean[] defined;
+    int[] stack = new int[16];
+    int stackSize;
+    int compareLeft;
+    int compareRight;
+    boolean compared;
+    final StringBuilder output = new StringBuilder();
+    String result;
+
+    Frame(int registerCount) {
+        registers = new int[registerCount];
+        defined = new boolean[registerCount];
+    }
+
+    int get(int slot, String name) {
+        if (defined[slot]) {
+            return registers[slot];
+        }
+
+        throw new RuntimeException("Register " + name + " was fetched but doesn't exist.");
+    }
+
+    void set(int slot, int value) {
+        registers[slot] = value;
+        defined[slot] = true;
+    }
+
+    void push(int address) {
+        if (stackSize == stack.length) {
+            stack = Arrays.copyOf(stack, stackSize * 2);
+        }
+
+        stack[stackSize++] = address;
+    }
+
+    int pop() {
+        if (stackSize == 0) {
+            throw new EmptyStackException();
+        }
+
+        return stack[--stackSize];
+    }
+}
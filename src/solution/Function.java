@@ -0,0 +1,115 @@
+package solution;
+
+enum Function {
+    MOV,
+    INC,
+    DEC,
+    ADD,
+    SUB,
+    MUL,
+    DIV,
+    JMP,
+    CMP,
+    JNE,
+    JE,
+    JGE,
+    JG,
+    JLE,
+    JL,
+    CALL,
+    RET,
+    MSG,
+    END,
+    NULL,
+
+    // Superinstructions created by Fusion, they can't appear in source code.
+    // CMP_Jcc a, b, label compares and jumps in one step. Not taking the jump skips the original Jcc.
+    CMP_JNE(true),
+    CMP_JE(true),
+    CMP_JGE(true),
+    CMP_JG(true),
+    CMP_JLE(true),
+    CMP_JL(true),
+
+    // STEP_Jcc r, delta, a, b, label adds delta (1 or -1) to r, then compares and jumps.
+    // Not taking the jump skips the original CMP and Jcc.
+    STEP_JNE(true),
+    STEP_JE(true),
+    STEP_JGE(true),
+    STEP_JG(true),
+    STEP_JLE(true),
+    STEP_JL(true),
+
+    // LOOP_Jcc a, b, r1, x1, r2, x2, ..., label stands in front of a loop created by LoopAccelerator, which adds
+    // each xi to ri, then compares a to b and jumps back with Jcc. It runs the whole loop at once and jumps to the
+    // label after it, or continues into the loop if it can't.
+    LOOP_JNE(true),
+    LOOP_JE(true),
+    LOOP_JGE(true),
+    LOOP_JG(true),
+    LOOP_JLE(true),
+    LOOP_JL(true),
+
+    // INVALID 'literal' stands in for an instruction reading an integer literal that doesn't fit into an int.
+    // It fails once executed, like parsing the literal did in the original interpreter.
+    INVALID(true);
+
+    final boolean internal;
+
+    Function() {
+        this(false);
+    }
+
+    Function(boolean internal) {
+        this.internal = internal;
+    }
+
+    // The number of operands the interpreter reads, fewer fail once executed.
+    int getOperandCount() {
+        return switch (this) {
+            case MOV, ADD, SUB, MUL, DIV, CMP -> 2;
+            case INC, DEC -> 1;
+            case CMP_JNE, CMP_JE, CMP_JGE, CMP_JG, CMP_JLE, CMP_JL -> 2;
+            case STEP_JNE, STEP_JE, STEP_JGE, STEP_JG, STEP_JLE, STEP_JL -> 4;
+            case LOOP_JNE, LOOP_JE, LOOP_JGE, LOOP_JG, LOOP_JLE, LOOP_JL -> 2;
+            default -> 0;
+        };
+    }
+
+    boolean isJump() {
+        return switch (this) {
+            case JMP, JNE, JE, JGE, JG, JLE, JL, CALL -> true;
+            default -> isFused() || isLoop();
+        };
+    }
+
+    boolean isFused() {
+        return isCompareJump() || isStepJump();
+    }
+
+    // How many of the original instructions following a superinstruction it skips when not jumping.
+    int getSkip() {
+        return isStepJump() ? 2 : isCompareJump() ? 1 : 0;
+    }
+
+    boolean isCompareJump() {
+        return switch (this) {
+            case CMP_JNE, CMP_JE, CMP_JGE, CMP_JG, CMP_JLE, CMP_JL -> true;
+            default -> false;
+        };
+    }
+
+    boolean isLoop() {
+        return switch (this) {
+            case LOOP_JNE, LOOP_JE, LOOP_JGE, LOOP_JG, LOOP_JLE, LOOP_JL -> true;
+            default -> false;
+        };
+    }
+
+    boolean isStepJump() {
+        return switch (this) {
+            case STEP_JNE, STEP_JE, STEP_JGE, STEP_JG, STEP_JLE, STEP_JL -> true;
+            default -> false;
+        };
+    }
+}
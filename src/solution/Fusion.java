@@ -0,0 +1,73 @@
+package solution;
+
+// Replaces the first instruction of CMP + Jcc pairs and INC/DEC + CMP + Jcc triples with a superinstruction
+// that does the work of the whole sequence in one dispatch. The original instructions after it are left in place,
+// so jumps into the middle of a sequence still land on the same code.
+final class Fusion {
+    private Fusion() {
+    }
+
+    static Instruction[] fuse(Instruction[] instructions) {
+        Instruction[] fused = instructions.clone();
+
+        for (int i = 0; i < instructions.length; i++) {
+            Instruction instruction = instructions[i];
+
+            if (isCompare(instructions, i) && isConditionalJump(instructions, i + 1)) {
+                Instruction jump = instructions[i + 1];
+                fused[i] = new Instruction(compareJump(jump.function), instruction.operands, jump.target, jump.label, instruction.line);
+            } else if (isStep(instruction) && isCompare(instructions, i + 1) && isConditionalJump(instructions, i + 2)) {
+                Operand[] compare = instructions[i + 1].operands;
+                Instruction jump = instructions[i + 2];
+                int delta = instruction.function == Function.INC ? 1 : -1;
+
+                Operand[] operands = {instruction.operands[0], new Operand(Operand.Kind.IMMEDIATE, delta, Integer.toString(delta)),
+                        compare[0], compare[1]};
+                fused[i] = new Instruction(stepJump(jump.function), operands, jump.target, jump.label, instruction.line);
+            }
+        }
+
+        return fused;
+    }
+
+    private static boolean isCompare(Instruction[] instructions, int index) {
+        return index < instructions.length && instructions[index].function == Function.CMP
+                && instructions[index].operands.length >= 2;
+    }
+
+    private static boolean isStep(Instruction instruction) {
+        return (instruction.function == Function.INC || instruction.function == Function.DEC) && instruction.operands.length >= 1;
+    }
+
+    // Jumps to missing labels are left alone so they keep failing exactly where they did.
+    private static boolean isConditionalJump(Instruction[] instructions, int index) {
+        if (index >= instructions.length || instructions[index].target < 0) return false;
+
+        return switch (instructions[index].function) {
+            case JNE, JE, JGE, JG, JLE, JL -> true;
+            default -> false;
+        };
+    }
+
+    private static Function compareJump(Function jump) {
+        return switch (jump) {
+            case JNE -> Function.CMP_JNE;
+            case JE -> Function.CMP_JE;
+            case JGE -> Function.CMP_JGE;
+            case JG -> Function.CMP_JG;
+            case JLE -> Function.CMP_JLE;
+            default -> Function.CMP_JL;
+        };
+    }
+
+    private static Function stepJump(Function jump) {
+        return switch (jump) {
+            case JNE -> Function.STEP_JNE;
+            case JE -> Function.STEP_JE;
+            case JGE -> Function.STEP_JGE;
+            case JG -> Function.STEP_JG;
+            case JLE -> Function.STEP_JLE;
+            default -> Function.STEP_JL;
+        };
+    }
+}
@@ -0,0 +1,91 @@
+package solution;
+
+import java.util.*;
+
+// Replaces CALLs of small leaf subroutines with a copy of their code. A leaf is a straight run of instructions
+// that ends with RET and doesn't jump, call or end the program, so running the copy has the same effect as the call,
+// just without pushing and popping a return address. The subroutine itself stays, as other code may still reach it.
+// Subroutines that only call leaves become leaves once those calls are inlined, so inlining repeats a few times.
+// Runs first, so the other passes see the copies.
+final class Inliner {
+    // Longest subroutine that is copied, not counting its RET
+    private static final int MAX_LENGTH = 8;
+
+    private static final int MAX_ROUNDS = 4;
+
+    private Inliner() {
+    }
+
+    static Instruction[] inline(Instruction[] instructions) {
+        // Programs may at most double in size
+        int budget = instructions.length;
+
+        for (int round = 0; round < MAX_ROUNDS; round++) {
+            Instruction[] inlined = inlineOnce(instructions, budget);
+            if (inlined == null) break;
+
+            budget -= inlined.length - instructions.length;
+            instructions = inlined;
+        }
+
+        return instructions;
+    }
+
+    // Returns null if there was nothing to inline.
+    private static Instruction[] inlineOnce(Instruction[] instructions, int budget) {
+        // The length of the subroutine replacing each CALL, or -1 for instructions that stay
+        int[] lengths = new int[instructions.length];
+        int growth = 0;
+        boolean inlined = false;
+        for (int i = 0; i < instructions.length; i++) {
+            lengths[i] = -1;
+
+            Instruction instruction = instructions[i];
+            if (instruction.function != Function.CALL || instruction.target < 0) continue;
+
+            int length = leafLength(instructions, instruction.target);
+            if (length < 0 || growth + length - 1 > budget) continue;
+
+            lengths[i] = length;
+            growth += length - 1;
+            inlined = true;
+        }
+
+        if (!inlined) return null;
+
+        // Jumps to an inlined CALL now go to its copy, or past it if the subroutine was empty.
+        int[] newIndex = new int[instructions.length + 1];
+        int size = 0;
+        for (int i = 0; i < instructions.length; i++) {
+            newIndex[i] = size;
+            size += lengths[i] >= 0 ? lengths[i] : 1;
+        }
+
+        newIndex[instructions.length] = size;
+
+        Instruction[] result = new Instruction[size];
+        for (int i = 0; i < instructions.length; i++) {
+            Instruction instruction = instructions[i];
+            if (lengths[i] >= 0) {
+                System.arraycopy(instructions, instruction.target, result, newIndex[i], lengths[i]);
+            } else if (instruction.target >= 0) {
+                result[newIndex[i]] = instruction.withTarget(newIndex[instruction.target]);
+            } else {
+                result[newIndex[i]] = instruction;
+            }
+        }
+
+        return result;
+    }
+
+    // The number of instructions before the RET of the leaf subroutine at start, or -1 if it isn't one.
+    private static int leafLength(Instruction[] instructions, int start) {
+        for (int i = start; i < instructions.length && i - start <= MAX_LENGTH; i++) {
+            Function function = instructions[i].function;
+            if (function == Function.RET) return i - start;
+            if (function.isJump() || function == Function.END) return -1;
+        }
+
+        return -1;
+    }
+}
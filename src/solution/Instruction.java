@@ -0,0 +1,50 @@
+package solution;
+
+final class Instruction {
+    final Function function;
+    final Operand[] operands;
+
+    // Index of the first instruction after the referenced label, or -1 if the label doesn't exist.
+    final int target;
+    final String label;
+
+    // Source line the instruction was decoded from, counting from 1. Optimizations keep the line of the instruction
+    // they rewrite. Instructions standing for no line at all, like those of a constant program, have 0.
+    final int line;
+
+    Instruction(Function function, Operand[] operands, int target, String label, int line) {
+        this.function = function;
+        this.operands = operands;
+        this.target = target;
+        this.label = label;
+        this.line = line;
+    }
+
+    Instruction withTarget(int target) {
+        return new Instruction(function, operands, target, label, line);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(function.toString().toLowerCase());
+        for (int i = 0; i < operands.length; i++) {
+            Operand operand = operands[i];
+            builder.append(i == 0 ? " " : ", ");
+            builder.append(operand.kind == Operand.Kind.STRING ? "'" + operand.text + "'" : operand.text);
+        }
+
+        if (function.isJump()) {
+            builder.append(operands.length == 0 ? " " : ", ").append(label != null ? label + " " : "").append('@').append(target);
+        }
+
+        return builder.toString();
+    }
+
+    int getTarget() {
+        if (target < 0) {
+            throw new RuntimeException("Label " + label + " was fetched but doesn't exist.");
+        }
+
+        return target;
+    }
+}
@@ -0,0 +1,287 @@
+package solution;
+
+import java.util.*;
+
+// Finds loops that only count: a straight run of INC, DEC, ADD and SUB by amounts the loop doesn't change, followed
+// by a CMP and a conditional jump back to the start. Every register changes by the same amount in each iteration,
+// so the number of iterations follows from the values at the start, and so does the state after the loop.
+// Registers may also sum up counting registers, as long as nothing else reads them.
+// A LOOP_Jcc instruction is inserted in front of each such loop. It computes that state and jumps past the loop, or
+// continues into the original loop if the loop wouldn't stop before a value wraps around. The loop's own jump back
+// goes to the original loop, so it's only tried once per entry. Runs after PeepholeOptimizer and before Fusion.
+final class LoopAccelerator {
+    // Loops that run more often than this can't be skipped, as the count wouldn't fit into an int.
+    private static final long MAX_ITERATIONS = 0xFFFFFFFFL;
+
+    private LoopAccelerator() {
+    }
+
+    static Instruction[] accelerate(Instruction[] instructions, int registerCount) {
+        BitSet[] defined = DefinedRegisters.analyze(instructions, registerCount);
+
+        // Loops by the index of their first instruction
+        Instruction[] loops = new Instruction[instructions.length + 1];
+        int count = 0;
+        for (int i = 0; i < instructions.length; i++) {
+            Instruction loop = loop(instructions, i, defined);
+            if (loop != null) {
+                loops[instructions[i].target] = loop;
+                count++;
+            }
+        }
+
+        if (count == 0) return instructions;
+
+        // Where each original instruction ends up. Jumps to the start of a loop now go to its LOOP_Jcc in front.
+        int[] newIndex = new int[instructions.length + 1];
+        int inserted = 0;
+        for (int i = 0; i <= instructions.length; i++) {
+            if (loops[i] != null) inserted++;
+            newIndex[i] = i + inserted;
+        }
+
+        Instruction[] accelerated = new Instruction[instructions.length + count];
+        for (int i = 0; i < instructions.length; i++) {
+            Instruction loop = loops[i];
+            if (loop != null) {
+                accelerated[newIndex[i] - 1] = loop.withTarget(entry(loop.target, loops, newIndex));
+            }
+
+            Instruction instruction = instructions[i];
+            if (instruction.target < 0) {
+                accelerated[newIndex[i]] = instruction;
+            } else {
+                boolean backEdge = loops[instruction.target] != null && isBackEdge(instructions, i);
+                int target = backEdge ? newIndex[instruction.target] : entry(instruction.target, loops, newIndex);
+                accelerated[newIndex[i]] = instruction.withTarget(target);
+            }
+        }
+
+        return accelerated;
+    }
+
+    private static int entry(int index, Instruction[] loops, int[] newIndex) {
+        return loops[index] != null ? newIndex[index] - 1 : newIndex[index];
+    }
+
+    // The LOOP_Jcc for a loop that ends with the jump at index, with the index after the loop as its target.
+    private static Instruction loop(Instruction[] instructions, int index, BitSet[] defined) {
+        if (!isBackEdge(instructions, index)) return null;
+
+        Instruction jump = instructions[index];
+        Instruction compare = instructions[index - 1];
+        int start = jump.target;
+        if (defined[start] == null) return null;
+
+        BitSet written = new BitSet();
+        ArrayList<Operand> operands = new ArrayList<>(List.of(compare.operands[0], compare.operands[1]));
+        for (int i = start; i < index - 1; i++) {
+            Instruction instruction = instructions[i];
+            Operand[] parts = instruction.operands;
+            operands.add(parts[0]);
+            operands.add(switch (instruction.function) {
+                case INC -> immediate(1);
+                case DEC -> immediate(-1);
+                case SUB -> immediate(-parts[1].value);
+                default -> parts[1];
+            });
+            written.set(parts[0].value);
+        }
+
+        // A register changes by the same amount in each iteration if all amounts added to it stay the same. It may
+        // also be added to registers nothing else reads, which then change by a growing amount.
+        for (int i = 2; i < operands.size(); i += 2) {
+            Operand amount = operands.get(i + 1);
+            if (!isWritten(amount, written)) continue;
+
+            Operand target = operands.get(i);
+            if (!isLinear(amount, operands, written) || isAmount(target, operands) || isSame(target, compare.operands[0])
+                    || isSame(target, compare.operands[1])) return null;
+        }
+
+        // The compare has to change between iterations, by the same amount each time
+        Operand left = compare.operands[0];
+        Operand right = compare.operands[1];
+        if (!isWritten(left, written) && !isWritten(right, written)) return null;
+        if (isWritten(left, written) && !isLinear(left, operands, written)) return null;
+        if (isWritten(right, written) && !isLinear(right, operands, written)) return null;
+
+        // Skipping the loop must not skip a read of a register that doesn't exist
+        for (Operand operand : operands) {
+            if (operand.isRegister() && !defined[start].get(operand.value)) return null;
+        }
+
+        return new Instruction(loopJump(jump.function), operands.toArray(new Operand[0]), index + 1, null, jump.line);
+    }
+
+    // A conditional jump back to a run of counting instructions followed by a CMP
+    private static boolean isBackEdge(Instruction[] instructions, int index) {
+        Instruction jump = instructions[index];
+        if (!isConditionalJump(jump) || jump.target < 0 || jump.target >= index - 1) return false;
+
+        Instruction compare = instructions[index - 1];
+        if (compare.function != Function.CMP || compare.operands.length < 2) return false;
+
+        for (int i = jump.target; i < index - 1; i++) {
+            Instruction instruction = instructions[i];
+            if (instruction.operands.length < instruction.function.getOperandCount()) return false;
+
+            boolean counts = switch (instruction.function) {
+                case INC, DEC, ADD -> true;
+                case SUB -> !instruction.operands[1].isRegister();
+                default -> false;
+            };
+
+            if (!counts) return false;
+        }
+
+        return true;
+    }
+
+    private static boolean isConditionalJump(Instruction instruction) {
+        return switch (instruction.function) {
+            case JNE, JE, JGE, JG, JLE, JL -> true;
+            default -> false;
+        };
+    }
+
+    private static boolean isWritten(Operand operand, BitSet written) {
+        return operand.isRegister() && written.get(operand.value);
+    }
+
+    private static boolean isLinear(Operand register, List<Operand> operands, BitSet written) {
+        for (int i = 2; i < operands.size(); i += 2) {
+            if (isSame(operands.get(i), register) && isWritten(operands.get(i + 1), written)) return false;
+        }
+
+        return true;
+    }
+
+    private static boolean isAmount(Operand register, List<Operand> operands) {
+        for (int i = 3; i < operands.size(); i += 2) {
+            if (isSame(operands.get(i), register)) return true;
+        }
+
+        return false;
+    }
+
+    private static boolean isSame(Operand operand, Operand register) {
+        return operand.isRegister() && operand.value == register.value;
+    }
+
+    private static Function loopJump(Function jump) {
+        return switch (jump) {
+            case JNE -> Function.LOOP_JNE;
+            case JE -> Function.LOOP_JE;
+            case JGE -> Function.LOOP_JGE;
+            case JG -> Function.LOOP_JG;
+            case JLE -> Function.LOOP_JLE;
+            default -> Function.LOOP_JL;
+        };
+    }
+
+    private static Operand immediate(int value) {
+        return new Operand(Operand.Kind.IMMEDIATE, value, Integer.toString(value));
+    }
+
+    // Runs the loop of a LOOP_Jcc on the registers. Returns false without changing anything if it can't.
+    static boolean run(Instruction loop, int[] registers) {
+        Operand[] operands = loop.operands;
+        Operand left = operands[0];
+        Operand right = operands[1];
+
+        int iterations = iterations(loop.function, value(left, registers), value(right, registers),
+                step(operands, left, registers), step(operands, right, registers));
+        if (iterations == 0) return false;
+
+        // Registers that add up other registers go first, while those still hold their values from before the loop.
+        // In iteration t, such a register is added its starting value, what was added to it earlier in the same
+        // iteration and t times its step.
+        int triangle = triangle(iterations);
+        for (int i = 2; i < operands.length; i += 2) {
+            Operand amount = operands[i + 1];
+            if (!isWritten(amount, operands)) continue;
+
+            int start = registers[amount.value] + prefix(operands, i, amount, registers);
+            registers[operands[i].value] += iterations * start + step(operands, amount, registers) * triangle;
+        }
+
+        for (int i = 2; i < operands.length; i += 2) {
+            Operand amount = operands[i + 1];
+            if (isWritten(amount, operands)) continue;
+
+            registers[operands[i].value] += iterations * value(amount, registers);
+        }
+
+        return true;
+    }
+
+    // How much a register changes in each iteration, if all amounts added to it are constant
+    private static int step(Operand[] operands, Operand register, int[] registers) {
+        return register.isRegister() ? prefix(operands, operands.length, register, registers) : 0;
+    }
+
+    // What is added to the register before the pair of operands at end
+    private static int prefix(Operand[] operands, int end, Operand register, int[] registers) {
+        int sum = 0;
+        for (int i = 2; i < end; i += 2) {
+            if (operands[i].value == register.value) {
+                sum += value(operands[i + 1], registers);
+            }
+        }
+
+        return sum;
+    }
+
+    private static boolean isWritten(Operand operand, Operand[] operands) {
+        if (!operand.isRegister()) return false;
+
+        for (int i = 2; i < operands.length; i += 2) {
+            if (operands[i].value == operand.value) return true;
+        }
+
+        return false;
+    }
+
+    private static int value(Operand operand, int[] registers) {
+        return operand.isRegister() ? registers[operand.value] : operand.value;
+    }
+
+    // 0 + 1 + ... + (iterations - 1), with iterations taken as unsigned and the result only correct up to overflow
+    static int triangle(int iterations) {
+        long count = Integer.toUnsignedLong(iterations);
+        return (int) (count % 2 == 0 ? count / 2 * (count - 1) : (count - 1) / 2 * count);
+    }
+
+    // How often a loop runs whose compare operands start at left and right and change by leftStep and rightStep in
+    // each iteration. Returns 0 if the loop doesn't stop before either of them wraps around, as there's no closed
+    // form for that. The count itself may exceed Integer.MAX_VALUE, so it's only correct up to overflow, just like
+    // the registers computed from it.
+    static int iterations(Function loop, int left, int right, int leftStep, int rightStep) {
+        // Without wrapping around, a - b compares to 0 like a compares to b
+        long difference = (long) left - right;
+        long step = (long) leftStep - rightStep;
+        long after = difference + step;
+
+        long iterations = switch (loop) {
+            case LOOP_JNE -> after == 0 ? 1 : step != 0 && difference % step == 0 && -difference / step > 0 ? -difference / step : 0;
+            case LOOP_JE -> after != 0 ? 1 : step != 0 ? 2 : 0;
+            case LOOP_JGE -> after < 0 ? 1 : step < 0 ? difference / -step + 1 : 0;
+            case LOOP_JG -> after <= 0 ? 1 : step < 0 ? (difference - step - 1) / -step : 0;
+            case LOOP_JLE -> after > 0 ? 1 : step > 0 ? -difference / step + 1 : 0;
+            case LOOP_JL -> after >= 0 ? 1 : step > 0 ? (step - difference - 1) / step : 0;
+            default -> throw new IllegalArgumentException(loop + " isn't a loop.");
+        };
+
+        if (iterations <= 0 || iterations > MAX_ITERATIONS) return 0;
+
+        // The operands only move in one direction, so if they end up in range they never wrapped around.
+        if (!isInt(left + iterations * leftStep) || !isInt(right + iterations * rightStep)) return 0;
+
+        return (int) iterations;
+    }
+
+    private static boolean isInt(long value) {
+        return value == (int) value;
+    }
+}
@@ -0,0 +1,122 @@
+package solution;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToLongBiFunction;
+
+// A thread-safe cache bounded by entry count and total weight. Entries are split over independently locked
+// segments, each holding an equal share of both limits and evicting its least recently used entries first.
+final class LruCache<K, V> {
+    private static final int MAX_SEGMENTS = 16;
+
+    // Small caches use fewer segments so eviction stays close to a global LRU.
+    private static final int MIN_SEGMENT_SIZE = 8;
+
+    private final ArrayList<Segment> segments;
+    private final ToLongBiFunction<K, V> weigher;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    LruCache(int maxSize, long maxWeight, ToLongBiFunction<K, V> weigher) {
+        if (maxSize <= 0 || maxWeight <= 0) {
+            throw new IllegalArgumentException("Cache capacity must be positive.");
+        }
+
+        int count = 1;
+        while (count * 2 <= MAX_SEGMENTS && count * 2 * MIN_SEGMENT_SIZE <= maxSize) {
+            count *= 2;
+        }
+
+        this.weigher = weigher;
+        segments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            segments.add(new Segment((maxSize + count - 1) / count, Math.max(1, maxWeight / count)));
+        }
+    }
+
+    V get(K key) {
+        V value = segment(key).get(key);
+        (value == null ? misses : hits).increment();
+        return value;
+    }
+
+    // The value is computed outside of any lock, so two threads missing at once may both compute it.
+    // Only the first result is kept.
+    V computeIfAbsent(K key, Function<? super K, ? extends V> function) {
+        V value = get(key);
+        if (value != null) return value;
+
+        return putIfAbsent(key, function.apply(key));
+    }
+
+    V putIfAbsent(K key, V value) {
+        return segment(key).putIfAbsent(key, value);
+    }
+
+    void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    CacheStats stats() {
+        int size = 0;
+        long weight = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.entries.size();
+                weight += segment.weight;
+            }
+        }
+
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), size, weight);
+    }
+
+    private Segment segment(K key) {
+        int hash = key.hashCode();
+        return segments.get((hash ^ (hash >>> 16)) & (segments.size() - 1));
+    }
+
+    private final class Segment {
+        private final int maxSize;
+        private final long maxWeight;
+
+        private final LinkedHashMap<K, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private long weight;
+
+        private Segment(int maxSize, long maxWeight) {
+            this.maxSize = maxSize;
+            this.maxWeight = maxWeight;
+        }
+
+        private synchronized V get(K key) {
+            return entries.get(key);
+        }
+
+        private synchronized V putIfAbsent(K key, V value) {
+            V existing = entries.get(key);
+            if (existing != null) return existing;
+
+            entries.put(key, value);
+            weight += weigher.applyAsLong(key, value);
+
+            Iterator<Map.Entry<K, V>> eldest = entries.entrySet().iterator();
+            while ((entries.size() > maxSize || weight > maxWeight) && eldest.hasNext()) {
+                Map.Entry<K, V> entry = eldest.next();
+                weight -= weigher.applyAsLong(entry.getKey(), entry.getValue());
+                eldest.remove();
+                evictions.increment();
+            }
+
+            return value;
+        }
+
+        private synchronized void clear() {
+            entries.clear();
+            weight = 0;
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package solution;
+
+import java.util.*;
+
+// Execution state for running a Program in the interpreter. A machine keeps its register file, return stack and
+// output buffer between runs, so one machine can run any number of programs one after another.
+// Machines aren't thread-safe; use one per thread. Interrupting the thread stops the run at its next backward jump
+// or call with a CancellationException.
+public final class Machine {
+    // Output buffers that grew beyond this are dropped rather than kept around for the next run.
+    private static final int MAX_RETAINED_OUTPUT = 1 << 20;
+
+    private int[] registers = new int[16];
+    private boolean[] defined = new boolean[16];
+    private int[] ret = new int[16];
+    private int retSize;
+    private StringBuilder output = new StringBuilder();
+
+    private Program program;
+    private TieredEngine engine;
+    private TieredEngine.Profile profile;
+
+    private int compareLeft;
+    private int compareRight;
+    private boolean compared;
+    private int pointer;
+    private String result;
+
+    // Backward jumps and calls left until the next check for an interrupt
+    private int polls = BytecodeCompiler.POLL_INTERVAL;
+
+    public String run(Program program) {
+        return run(program, null, null);
+    }
+
+    String run(Program program, TieredEngine engine, TieredEngine.Profile profile) {
+        reset(program);
+        this.engine = engine;
+        this.profile = profile;
+
+        try {
+            return interpret();
+        } finally {
+            this.program = null;
+            this.engine = null;
+            this.profile = null;
+        }
+    }
+
+    private void reset(Program program) {
+        this.program = program;
+
+        int registerCount = program.getRegisterCount();
+        if (registers.length < registerCount) {
+            registers = new int[registerCount];
+            defined = new boolean[registerCount];
+        } else {
+            Arrays.fill(defined, 0, registerCount, false);
+        }
+
+        retSize = 0;
+        if (output.capacity() > MAX_RETAINED_OUTPUT) {
+            output = new StringBuilder();
+        } else {
+            output.setLength(0);
+        }
+
+        compareLeft = 0;
+        compareRight = 0;
+        compared = false;
+        pointer = 0;
+        result = null;
+    }
+
+    private String interpret() {
+        Instruction[] instructions = program.getInstructions();
+
+        while (pointer < instructions.length) {
+            Instruction instruction = instructions[pointer++];
+            if (executeInstruction(instruction)) {
+                result = output.toString();
+                break;
+            }
+        }
+
+        return result;
+    }
+
+    private boolean executeInstruction(Instruction instruction) {
+        Operand[] operands = instruction.operands;
+
+        switch (instruction.function) {
+            case MOV -> move(operands[0], operands[1]);
+            case INC -> setRegister(operands[0], getRegister(operands[0]) + 1);
+            case DEC -> setRegister(operands[0], getRegister(operands[0]) - 1);
+            case ADD -> setRegister(operands[0], getRegister(operands[0]) + getConstOrRegister(operands[1]));
+            case SUB -> setRegister(operands[0], getRegister(operands[0]) - getConstOrRegister(operands[1]));
+            case MUL -> setRegister(operands[0], getRegister(operands[0]) * getConstOrRegister(operands[1]));
+            case DIV -> setRegister(operands[0], getRegister(operands[0]) / getConstOrRegister(operands[1]));
+            case JMP -> jump(instruction.getTarget());
+            case CMP -> compare(operands[0], operands[1]);
+            case JNE -> jumpIf(compareLeft != compareRight, instruction);
+            case JE -> jumpIf(compareLeft == compareRight, instruction);
+            case JGE -> jumpIf(compareLeft >= compareRight, instruction);
+            case JG -> jumpIf(compareLeft > compareRight, instruction);
+            case JLE -> jumpIf(compareLeft <= compareRight, instruction);
+            case JL -> jumpIf(compareLeft < compareRight, instruction);
+            case CALL -> {
+                int target = instruction.getTarget();
+                if (target < pointer) poll();
+                push(pointer);
+                pointer = target;
+            }
+            case RET -> pointer = pop();
+            case MSG -> addMessage(operands);
+            case CMP_JNE -> {
+                compare(operands[0], operands[1]);
+                branch(compareLeft != compareRight, instruction.target, 1);
+            }
+            case CMP_JE -> {
+                compare(operands[0], operands[1]);
+                branch(compareLeft == compareRight, instruction.target, 1);
+            }
+            case CMP_JGE -> {
+                compare(operands[0], operands[1]);
+                branch(compareLeft >= compareRight, instruction.target, 1);
+            }
+            case CMP_JG -> {
+                compare(operands[0], operands[1]);
+                branch(compareLeft > compareRight, instruction.target, 1);
+            }
+            case CMP_JLE -> {
+                compare(operands[0], operands[1]);
+                branch(compareLeft <= compareRight, instruction.target, 1);
+            }
+            case CMP_JL -> {
+                compare(operands[0], operands[1]);
+                branch(compareLeft < compareRight, instruction.target, 1);
+            }
+            case STEP_JNE -> {
+                step(operands);
+                branch(compareLeft != compareRight, instruction.target, 2);
+            }
+            case STEP_JE -> {
+                step(operands);
+                branch(compareLeft == compareRight, instruction.target, 2);
+            }
+            case STEP_JGE -> {
+                step(operands);
+                branch(compareLeft >= compareRight, instruction.target, 2);
+            }
+            case STEP_JG -> {
+                step(operands);
+                branch(compareLeft > compareRight, instruction.target, 2);
+            }
+            case STEP_JLE -> {
+                step(operands);
+                branch(compareLeft <= compareRight, instruction.target, 2);
+            }
+            case STEP_JL -> {
+                step(operands);
+                branch(compareLeft < compareRight, instruction.target, 2);
+            }
+            case LOOP_JNE, LOOP_JE, LOOP_JGE, LOOP_JG, LOOP_JLE, LOOP_JL -> {
+                if (LoopAccelerator.run(instruction, registers)) {
+                    compare(operands[0], operands[1]);
+                    jump(instruction.target);
+                }
+            }
+            case INVALID -> throw BytecodeCompiler.invalidLiteral(operands[0].text);
+            case END -> {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void jumpIf(boolean condition, Instruction instruction) {
+        int target = instruction.getTarget();
+        if (!compared) throw BytecodeCompiler.notCompared(instruction.line);
+        if (condition) jump(target);
+    }
+
+    // Used by superinstructions, which skip the original instructions following them when not jumping.
+    private void branch(boolean condition, int target, int skip) {
+        if (condition) {
+            jump(target);
+        } else {
+            pointer += skip;
+        }
+    }
+
+    private void compare(Operand left, Operand right) {
+        compareLeft = getConstOrRegister(left);
+        compareRight = getConstOrRegister(right);
+        compared = true;
+    }
+
+    // INC or DEC followed by CMP, for STEP_Jcc
+    private void step(Operand[] operands) {
+        setRegister(operands[0], getRegister(operands[0]) + operands[1].value);
+        compare(operands[2], operands[3]);
+    }
+
+    private void jump(int target) {
+        if (target >= pointer) {
+            pointer = target;
+            return;
+        }
+
+        poll();
+        if (engine != null) {
+            CompiledProgram compiled = engine.onBackEdge(profile, target);
+            if (compiled != null && compiled.canResumeAt(target)) {
+                // The loop is hot, so the compiled program finishes this execution from the loop header.
+                result = compiled.resume(target, registers, defined, ret, retSize, compareLeft, compareRight, compared, output);
+                pointer = Integer.MAX_VALUE;
+                return;
+            }
+        }
+
+        pointer = target;
+    }
+
+    private void poll() {
+        if (--polls == 0) {
+            polls = BytecodeCompiler.POLL_INTERVAL;
+            BytecodeCompiler.poll(null);
+        }
+    }
+
+    private void push(int address) {
+        if (retSize == ret.length) {
+            ret = Arrays.copyOf(ret, retSize * 2);
+        }
+
+        ret[retSize++] = address;
+    }
+
+    private int pop() {
+        if (retSize == 0) {
+            throw new EmptyStackException();
+        }
+
+        return ret[--retSize];
+    }
+
+    // Like the original interpreter, MOV copies a register that doesn't exist without failing. Its target doesn't
+    // exist either then, which fails once it's read.
+    private void move(Operand target, Operand source) {
+        if (!source.isRegister()) {
+            setRegister(target, source.value);
+            return;
+        }
+
+        registers[target.value] = registers[source.value];
+        defined[target.value] = defined[source.value];
+    }
+
+    private void setRegister(Operand target, int value) {
+        registers[target.value] = value;
+        defined[target.value] = true;
+    }
+
+    private int getRegister(Operand reg) {
+        if (defined[reg.value]) {
+            return registers[reg.value];
+        }
+
+        throw new RuntimeException("Register " + reg.text + " was fetched but doesn't exist.");
+    }
+
+    private int getConstOrRegister(Operand operand) {
+        // Immediates carry their value directly, anything else is a reference to a register.
+        if (operand.isRegister()) {
+            return getRegister(operand);
+        }
+
+        return operand.value;
+    }
+
+    private void addMessage(Operand[] parts) {
+        for (Operand part : parts) {
+            if (part.kind == Operand.Kind.STRING) {
+                output.append(part.text);
+            } else {
+                output.append(getConstOrRegister(part));
+            }
+        }
+    }
+}
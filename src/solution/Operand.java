@@ -0,0 +1,27 @@
+package solution;
+
+final class Operand {
+    enum Kind {
+        REGISTER,
+        IMMEDIATE,
+        STRING
+    }
+
+    final Kind kind;
+
+    // Register slot for registers, the constant itself for immediates
+    final int value;
+
+    // Register name, or the unquoted text of a string literal
+    final String text;
+
+    Operand(Kind kind, int value, String text) {
+        this.kind = kind;
+        this.value = value;
+        this.text = text;
+    }
+
+    boolean isRegister() {
+        return kind == Kind.REGISTER;
+    }
+}
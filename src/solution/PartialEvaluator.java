@@ -0,0 +1,23 @@
+package solution;
+
+// Programs take no input, so one that finishes has the same output on every run. This runs each program while it
+// is compiled, for at most a budget of instructions, and replaces the ones that finish in time by a program that
+// only outputs the result. Programs that fail or run out of budget are kept as they are, so they fail or run at
+// runtime like before.
+final class PartialEvaluator {
+    private PartialEvaluator() {
+    }
+
+    static Program evaluate(Program program, int budget) {
+        if (budget <= 0) return program;
+
+        Frame frame = new Frame(program.getRegisterCount());
+        try {
+            if (!BlockProgram.compile(program).run(frame, budget)) return program;
+        } catch (RuntimeException e) {
+            return program;
+        }
+
+        return Program.constant(frame.result);
+    }
+}
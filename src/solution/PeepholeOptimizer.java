@@ -0,0 +1,143 @@
+package solution;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Rewrites short windows of instructions with a list of PeepholeRules until none of them applies anymore.
+// Windows containing a jump target after their first instruction are never rewritten, and jump targets are
+// renumbered when instructions are removed. Each optimizer counts how often its rules fired, pass one to
+// CompilerOptions.withPeephole to see what it does to the programs compiled with those options.
+public final class PeepholeOptimizer {
+    // Every round can only shrink the program, this just bounds the work on pathological inputs.
+    private static final int MAX_ROUNDS = 16;
+
+    private final List<PeepholeRule> rules;
+    private final AtomicLongArray hits;
+
+    PeepholeOptimizer(List<PeepholeRule> rules) {
+        this.rules = List.copyOf(rules);
+        this.hits = new AtomicLongArray(rules.size());
+    }
+
+    // All the rules in PeepholeRules.
+    public static PeepholeOptimizer defaults() {
+        return new PeepholeOptimizer(PeepholeRules.defaults());
+    }
+
+    // Only the default rules with the given names, like "step-chain" or "jump-to-next", in their default order.
+    public static PeepholeOptimizer of(String... ruleNames) {
+        Set<String> names = new HashSet<>(Arrays.asList(ruleNames));
+        ArrayList<PeepholeRule> rules = new ArrayList<>();
+        for (PeepholeRule rule : PeepholeRules.defaults()) {
+            if (names.remove(rule.getName())) rules.add(rule);
+        }
+
+        if (!names.isEmpty()) {
+            throw new IllegalArgumentException("Unknown peephole rules " + names + ".");
+        }
+
+        return new PeepholeOptimizer(rules);
+    }
+
+    // How often each rule has fired, by rule name.
+    public Map<String, Long> getRuleHits() {
+        LinkedHashMap<String, Long> counts = new LinkedHashMap<>();
+        for (int i = 0; i < rules.size(); i++) {
+            counts.put(rules.get(i).getName(), hits.get(i));
+        }
+
+        return counts;
+    }
+
+    Instruction[] optimize(Instruction[] instructions, int registerCount) {
+        for (int round = 0; round < MAX_ROUNDS; round++) {
+            Instruction[] optimized = optimizeOnce(instructions, registerCount);
+            if (optimized == null) break;
+
+            instructions = optimized;
+        }
+
+        return instructions;
+    }
+
+    // Returns null if nothing changed.
+    private Instruction[] optimizeOnce(Instruction[] instructions, int registerCount) {
+        Window window = new Window(instructions, registerCount);
+        ArrayList<Instruction> optimized = new ArrayList<>(instructions.length);
+        int[] newIndex = new int[instructions.length + 1];
+        boolean changed = false;
+
+        int i = 0;
+        while (i < instructions.length) {
+            newIndex[i] = optimized.size();
+
+            PeepholeRule.Rewrite rewrite = null;
+            for (int rule = 0; rule < rules.size() && rewrite == null; rule++) {
+                rewrite = rules.get(rule).rewrite(window, i);
+                if (rewrite != null && window.hasTargetWithin(i, rewrite.length())) {
+                    rewrite = null;
+                }
+
+                if (rewrite != null) {
+                    hits.incrementAndGet(rule);
+                }
+            }
+
+            if (rewrite == null) {
+                optimized.add(instructions[i++]);
+                continue;
+            }
+
+            // Nothing jumps into the window, so its other instructions have no index of their own anymore.
+            for (int k = 1; k < rewrite.length(); k++) {
+                newIndex[i + k] = optimized.size();
+            }
+
+            optimized.addAll(Arrays.asList(rewrite.replacement()));
+            i += rewrite.length();
+            changed = true;
+        }
+
+        if (!changed) return null;
+        newIndex[instructions.length] = optimized.size();
+
+        Instruction[] result = new Instruction[optimized.size()];
+        for (int j = 0; j < result.length; j++) {
+            Instruction instruction = optimized.get(j);
+            result[j] = instruction.target < 0 ? instruction : instruction.withTarget(newIndex[instruction.target]);
+        }
+
+        return result;
+    }
+
+    // What rules can see: the instructions, where jumps land and which registers are certainly defined.
+    static final class Window {
+        private final Instruction[] instructions;
+        private final BitSet targets = new BitSet();
+        private final BitSet[] defined;
+
+        private Window(Instruction[] instructions, int registerCount) {
+            this.instructions = instructions;
+            this.defined = DefinedRegisters.analyze(instructions, registerCount);
+
+            for (int i = 0; i < instructions.length; i++) {
+                if (instructions[i].target >= 0) targets.set(instructions[i].target);
+                if (instructions[i].function == Function.CALL) targets.set(i + 1);
+            }
+        }
+
+        Instruction get(int index) {
+            return index < instructions.length ? instructions[index] : null;
+        }
+
+        // Unreachable instructions count as defined, they can't fail anyway.
+        boolean isDefined(int index, Operand register) {
+            return defined[index] == null || defined[index].get(register.value);
+        }
+
+        private boolean hasTargetWithin(int index, int length) {
+            int next = targets.nextSetBit(index + 1);
+            return next >= 0 && next < index + length;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package solution;
+
+// A rewrite of a short window of instructions into a cheaper equivalent, see PeepholeOptimizer.
+interface PeepholeRule {
+    String getName();
+
+    // Returns the rewrite of the window starting at index, or null if the rule doesn't apply there.
+    Rewrite rewrite(PeepholeOptimizer.Window window, int index);
+
+    // Replaces length instructions with the given ones, which may be fewer or none at all.
+    record Rewrite(int length, Instruction... replacement) {
+    }
+}
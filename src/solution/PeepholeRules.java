@@ -0,0 +1,134 @@
+package solution;
+
+import java.util.List;
+
+// The rules PeepholeOptimizer applies by default. A rule may only drop a register read if the register is
+// certainly defined there, otherwise the read was the thing that failed. MOV copies undefined registers rather than
+// failing, so its reads can go either way.
+final class PeepholeRules {
+    private PeepholeRules() {
+    }
+
+    static List<PeepholeRule> defaults() {
+        return List.of(new StepChain(), new Identity(), new SelfMove(), new OverwrittenMove(), new JumpToNext());
+    }
+
+    // inc a, inc a, dec a, inc a -> add a, 2
+    static final class StepChain implements PeepholeRule {
+        @Override
+        public String getName() {
+            return "step-chain";
+        }
+
+        @Override
+        public Rewrite rewrite(PeepholeOptimizer.Window window, int index) {
+            Instruction first = window.get(index);
+            if (!isStep(first)) return null;
+
+            Operand register = first.operands[0];
+            int length = 0;
+            int delta = 0;
+            for (Instruction next = first; isStep(next) && next.operands[0].value == register.value; next = window.get(index + length)) {
+                delta += next.function == Function.INC ? 1 : -1;
+                length++;
+            }
+
+            if (length < 2) return null;
+
+            return new Rewrite(length, new Instruction(Function.ADD, new Operand[]{register, immediate(delta)}, -1, null, first.line));
+        }
+
+        private static boolean isStep(Instruction instruction) {
+            return instruction != null && (instruction.function == Function.INC || instruction.function == Function.DEC)
+                    && instruction.operands.length >= 1;
+        }
+    }
+
+    // add a, 0 / sub a, 0 / mul a, 1 / div a, 1 -> nothing
+    static final class Identity implements PeepholeRule {
+        @Override
+        public String getName() {
+            return "identity";
+        }
+
+        @Override
+        public Rewrite rewrite(PeepholeOptimizer.Window window, int index) {
+            Instruction instruction = window.get(index);
+            if (instruction.operands.length < 2 || instruction.operands[1].kind != Operand.Kind.IMMEDIATE) return null;
+
+            int identity = switch (instruction.function) {
+                case ADD, SUB -> 0;
+                case MUL, DIV -> 1;
+                default -> -1;
+            };
+
+            if (identity < 0 || instruction.operands[1].value != identity) return null;
+            if (!window.isDefined(index, instruction.operands[0])) return null;
+
+            return new Rewrite(1);
+        }
+    }
+
+    // mov a, a -> nothing
+    static final class SelfMove implements PeepholeRule {
+        @Override
+        public String getName() {
+            return "self-move";
+        }
+
+        @Override
+        public Rewrite rewrite(PeepholeOptimizer.Window window, int index) {
+            Instruction instruction = window.get(index);
+            if (instruction.function != Function.MOV || instruction.operands.length < 2) return null;
+
+            Operand target = instruction.operands[0];
+            Operand source = instruction.operands[1];
+            if (!source.isRegister() || source.value != target.value) return null;
+
+            return new Rewrite(1);
+        }
+    }
+
+    // mov a, x, mov a, y -> mov a, y, unless y reads a
+    static final class OverwrittenMove implements PeepholeRule {
+        @Override
+        public String getName() {
+            return "overwritten-move";
+        }
+
+        @Override
+        public Rewrite rewrite(PeepholeOptimizer.Window window, int index) {
+            Instruction first = window.get(index);
+            Instruction second = window.get(index + 1);
+            if (first.function != Function.MOV || first.operands.length < 2) return null;
+            if (second == null || second.function != Function.MOV || second.operands.length < 2) return null;
+
+            Operand target = first.operands[0];
+            Operand source = second.operands[1];
+            if (second.operands[0].value != target.value) return null;
+            if (source.isRegister() && source.value == target.value) return null;
+
+            return new Rewrite(2, second);
+        }
+    }
+
+    // jmp to the instruction right after it -> nothing
+    static final class JumpToNext implements PeepholeRule {
+        @Override
+        public String getName() {
+            return "jump-to-next";
+        }
+
+        @Override
+        public Rewrite rewrite(PeepholeOptimizer.Window window, int index) {
+            Instruction instruction = window.get(index);
+            if (instruction.function != Function.JMP || instruction.target != index + 1) return null;
+
+            return new Rewrite(1);
+        }
+    }
+
+    private static Operand immediate(int value) {
+        return new Operand(Operand.Kind.IMMEDIATE, value, Integer.toString(value));
+    }
+}
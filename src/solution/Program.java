@@ -0,0 +1,295 @@
+package solution;
+
+import java.util.*;
+
+// An immutable, pre-decoded program. Compile once and run it on any number of Machines, from any thread.
+public final class Program {
+    private final Instruction[] instructions;
+    private final String[] registerNames;
+
+    private Program(Instruction[] instructions, String[] registerNames) {
+        this.instructions = instructions;
+        this.registerNames = registerNames;
+    }
+
+    public static Program compile(final String input) {
+        return compile(input, CompilerOptions.DEFAULT);
+    }
+
+    public static Program compile(final String input, CompilerOptions options) {
+        String[] lines = input.split("\n");
+
+        HashMap<String, Integer> labels = new HashMap<>();
+        ArrayList<LinkedList<String>> decoded = new ArrayList<>();
+        ArrayList<Function> functions = new ArrayList<>();
+        ArrayList<Integer> lineNumbers = new ArrayList<>();
+
+        for (int number = 1; number <= lines.length; number++) {
+            String line = removeComment(lines[number - 1]);
+
+            // Skip empty lines
+            if (line.isEmpty()) continue;
+
+            // Store function (label) locations as the index of the next instruction
+            if (isLabel(line)) {
+                labels.put(line.substring(0, line.length() - 1), decoded.size());
+                continue;
+            }
+
+            LinkedList<String> parts = splitInstruction(line);
+            Function function = parts.isEmpty() ? Function.NULL : getFunction(parts.pollFirst());
+
+            // Unknown functions never had any effect, so they don't need to be executed
+            if (function == Function.NULL) continue;
+
+            decoded.add(parts);
+            functions.add(function);
+            lineNumbers.add(number);
+        }
+
+        LinkedHashMap<String, Integer> registers = new LinkedHashMap<>();
+
+        Instruction[] instructions = new Instruction[decoded.size()];
+        for (int i = 0; i < instructions.length; i++) {
+            Function function = functions.get(i);
+            String[] args = decoded.get(i).toArray(new String[0]);
+
+            if (function.isJump()) {
+                String label = args.length > 0 ? args[0] : null;
+                int target = label != null ? labels.getOrDefault(label, -1) : -1;
+                instructions[i] = new Instruction(function, new Operand[0], target, label, lineNumbers.get(i));
+                continue;
+            }
+
+            Operand[] operands = new Operand[args.length];
+            String invalid = null;
+            for (int j = 0; j < args.length; j++) {
+                // The first operand of a register-modifying function is always a register, even if it looks like a constant
+                if (j == 0 && writesRegister(function)) {
+                    operands[j] = register(args[j], registers);
+                } else {
+                    operands[j] = decodeOperand(args[j], function == Function.MSG, registers);
+                }
+
+                // Literals that don't fit into an int only fail if the instruction reads them, once it's executed
+                if (operands[j] == null) {
+                    if (invalid == null && (j < function.getOperandCount() || function == Function.MSG)) {
+                        invalid = args[j];
+                    }
+
+                    operands[j] = new Operand(Operand.Kind.IMMEDIATE, 0, args[j]);
+                }
+            }
+
+            instructions[i] = invalid != null ? new Instruction(Function.INVALID, new Operand[]{new Operand(Operand.Kind.STRING, 0, invalid)}, -1, null, lineNumbers.get(i))
+                    : new Instruction(function, operands, -1, null, lineNumbers.get(i));
+        }
+
+        if (options.isInlining()) {
+            instructions = Inliner.inline(instructions);
+        }
+
+        if (options.isTailCalls()) {
+            instructions = TailCalls.eliminate(instructions);
+        }
+
+        if (options.isConstantFolding()) {
+            instructions = ConstantFolder.fold(instructions, registers.size());
+        }
+
+        if (options.isPeephole()) {
+            instructions = options.getPeepholeOptimizer().optimize(instructions, registers.size());
+        }
+
+        if (options.isLoopAcceleration()) {
+            instructions = LoopAccelerator.accelerate(instructions, registers.size());
+        }
+
+        if (options.isFusion()) {
+            instructions = Fusion.fuse(instructions);
+        }
+
+        Program program = new Program(instructions, registers.keySet().toArray(new String[0]));
+        return PartialEvaluator.evaluate(program, options.getEvaluationBudget());
+    }
+
+    // A program that outputs the given text and ends, or that runs off its end without output for null.
+    static Program constant(String output) {
+        if (output == null) {
+            return new Program(new Instruction[0], new String[0]);
+        }
+
+        Operand text = new Operand(Operand.Kind.STRING, 0, output);
+        return new Program(new Instruction[]{
+                new Instruction(Function.MSG, new Operand[]{text}, -1, null, 0),
+                new Instruction(Function.END, new Operand[0], -1, null, 0)
+        }, new String[0]);
+    }
+
+    // The instructions after optimization, one per entry, like "cmp_jne a, 5, loop @3" for a fused CMP and JNE
+    // jumping to instruction 3. For tests and debugging, the format may change.
+    public List<String> getListing() {
+        ArrayList<String> listing = new ArrayList<>(instructions.length);
+        for (Instruction instruction : instructions) {
+            listing.add(instruction.toString());
+        }
+
+        return listing;
+    }
+
+    Instruction[] getInstructions() {
+        return instructions;
+    }
+
+    int getRegisterCount() {
+        return registerNames.length;
+    }
+
+    String getRegisterName(int slot) {
+        return registerNames[slot];
+    }
+
+    // A textual form of the decoded program that ignores comments, whitespace and label names.
+    // Programs with the same canonical form behave identically.
+    String getCanonicalForm() {
+        StringBuilder builder = new StringBuilder();
+        for (Instruction instruction : instructions) {
+            builder.append(instruction.function);
+            if (instruction.function.isJump()) {
+                builder.append(' ').append(instruction.target);
+                if (instruction.target < 0) builder.append(' ').append(instruction.label);
+            }
+
+            for (Operand operand : instruction.operands) {
+                switch (operand.kind) {
+                    case REGISTER -> builder.append(" r").append(operand.text.length()).append(':').append(operand.text);
+                    case IMMEDIATE -> builder.append(" i").append(operand.value);
+                    case STRING -> builder.append(" s").append(operand.text.length()).append(':').append(operand.text);
+                }
+            }
+
+            builder.append('\n');
+        }
+
+        return builder.toString();
+    }
+
+    // Returns null for an integer literal that doesn't fit into an int.
+    private static Operand decodeOperand(String arg, boolean allowString, Map<String, Integer> registers) {
+        if (allowString && isString(arg)) {
+            return new Operand(Operand.Kind.STRING, 0, arg.substring(1, arg.length() - 1));
+        }
+
+        if (isInteger(arg)) {
+            Integer value = parseInt(arg);
+            return value != null ? new Operand(Operand.Kind.IMMEDIATE, value, arg) : null;
+        }
+
+        return register(arg, registers);
+    }
+
+    // Returns null for literals that don't fit into an int.
+    private static Integer parseInt(String literal) {
+        try {
+            return Integer.parseInt(literal);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Operand register(String name, Map<String, Integer> registers) {
+        Integer slot = registers.get(name);
+        if (slot == null) {
+            slot = registers.size();
+            registers.put(name, slot);
+        }
+
+        return new Operand(Operand.Kind.REGISTER, slot, name);
+    }
+
+    // Equivalent to matching "\\w+:"
+    private static boolean isLabel(String line) {
+        int end = line.length() - 1;
+        if (end < 1 || line.charAt(end) != ':') return false;
+
+        for (int i = 0; i < end; i++) {
+            char c = line.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_')) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // Equivalent to matching "'.*'"
+    private static boolean isString(String arg) {
+        return arg.length() >= 2 && arg.charAt(0) == '\'' && arg.charAt(arg.length() - 1) == '\'';
+    }
+
+    // Equivalent to matching "-?\\d+"
+    private static boolean isInteger(String arg) {
+        int start = !arg.isEmpty() && arg.charAt(0) == '-' ? 1 : 0;
+        if (start == arg.length()) return false;
+
+        for (int i = start; i < arg.length(); i++) {
+            char c = arg.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+
+        return true;
+    }
+
+    private static boolean writesRegister(Function function) {
+        return switch (function) {
+            case MOV, INC, DEC, ADD, SUB, MUL, DIV -> true;
+            default -> false;
+        };
+    }
+
+    private static String removeComment(String line) {
+        int index = line.indexOf(';');
+        return index < 0 ? line : line.substring(0, index);
+    }
+
+    private static Function getFunction(String str) {
+        for (Function function : Function.values()) {
+            if (!function.internal && function.toString().equals(str.toUpperCase())) {
+                return function;
+            }
+        }
+
+        return Function.NULL;
+    }
+
+    private static LinkedList<String> splitInstruction(String raw) {
+        LinkedList<String> instructions = new LinkedList<>();
+
+        StringBuilder accumulator = new StringBuilder();
+
+        boolean inString = false;
+        for (char c : raw.toCharArray()) {
+            if (c == '\'') {
+                inString = !inString;
+                accumulator.append(c);
+            } else if (!inString) {
+                if (c == ' ' || c == ',') {
+                    if (!accumulator.isEmpty()) {
+                        instructions.addLast(accumulator.toString());
+                        accumulator.setLength(0);
+                    }
+                } else {
+                    accumulator.append(c);
+                }
+            } else {
+                accumulator.append(c);
+            }
+        }
+
+        if (!accumulator.isEmpty()) {
+            instructions.addLast(accumulator.toString());
+        }
+
+        return instructions;
+    }
+}
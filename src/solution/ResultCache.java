@@ -0,0 +1,223 @@
+package solution;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+// Programs can't read any input, so a program that finishes always produces the same output.
+// This caches that output, including null for programs without END, keyed by a hash of the program's canonical form.
+// Entries are kept in a bounded LruCache and, if a directory is given, persisted there as one file per program.
+// Files are written by a background thread so misses don't wait for the disk, and the oldest ones are deleted once
+// the directory holds more than maxDiskSize bytes. Close the cache to finish the pending writes.
+public final class ResultCache implements AutoCloseable {
+    // Writes waiting for the disk beyond this are dropped, which only costs a miss later
+    private static final int MAX_PENDING_WRITES = 1024;
+
+    private final LruCache<String, Optional<String>> results;
+    private final Path directory;
+    private final long maxDiskSize;
+    private final ThreadPoolExecutor writer;
+
+    // Sizes of the files on disk by key, oldest first. After construction, only the writer changes them.
+    private final LinkedHashMap<String, Long> files = new LinkedHashMap<>();
+    private long diskSize;
+
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder diskMisses = new LongAdder();
+    private final LongAdder diskEvictions = new LongAdder();
+
+    public ResultCache(int maxEntries, long maxWeight) {
+        this(maxEntries, maxWeight, null);
+    }
+
+    public ResultCache(int maxEntries, long maxWeight, Path directory) {
+        this(maxEntries, maxWeight, directory, Long.getLong("assembly.resultCacheDiskSize", 256L << 20));
+    }
+
+    // maxWeight bounds the total length of the cached outputs kept in memory, maxDiskSize the bytes kept on disk.
+    public ResultCache(int maxEntries, long maxWeight, Path directory, long maxDiskSize) {
+        if (maxDiskSize <= 0) {
+            throw new IllegalArgumentException("Cache capacity must be positive.");
+        }
+
+        this.results = new LruCache<>(maxEntries, maxWeight, (key, output) -> key.length() + output.map(String::length).orElse(0));
+        this.directory = directory;
+        this.maxDiskSize = maxDiskSize;
+
+        if (directory == null) {
+            writer = null;
+            return;
+        }
+
+        try {
+            Files.createDirectories(directory);
+            index();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cache directory " + directory + " can't be created.", e);
+        }
+
+        writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(MAX_PENDING_WRITES), task -> {
+            Thread thread = new Thread(task, "assembly-result-cache");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    public CacheStats getStats() {
+        return results.stats();
+    }
+
+    // Hits and misses of lookups that went to disk, the files deleted to stay within maxDiskSize and what's left.
+    public CacheStats getDiskStats() {
+        synchronized (files) {
+            return new CacheStats(diskHits.sum(), diskMisses.sum(), diskEvictions.sum(), files.size(), diskSize);
+        }
+    }
+
+    // Waits for the pending writes. The cache keeps working in memory afterwards.
+    @Override
+    public void close() {
+        if (writer == null) return;
+
+        writer.shutdown();
+        try {
+            writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static String key(Program program) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(program.getCanonicalForm().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Returns null if the output isn't known, or an Optional holding the (possibly null) output.
+    Optional<String> get(String key) {
+        Optional<String> output = results.get(key);
+        if (output != null || directory == null) return output;
+
+        Optional<String> stored = read(directory.resolve(key));
+        if (stored != null) {
+            diskHits.increment();
+            results.putIfAbsent(key, stored);
+        } else {
+            diskMisses.increment();
+        }
+
+        return stored;
+    }
+
+    void put(String key, String output) {
+        results.putIfAbsent(key, Optional.ofNullable(output));
+        if (writer != null) {
+            writer.execute(() -> write(key, output));
+        }
+    }
+
+    // Picks up the files earlier caches left in the directory, oldest first.
+    private void index() throws IOException {
+        record Stored(String key, long size, long modified) {
+        }
+
+        ArrayList<Stored> stored = new ArrayList<>();
+        List<Path> paths;
+        try (Stream<Path> listed = Files.list(directory)) {
+            paths = listed.toList();
+        }
+
+        for (Path path : paths) {
+            String name = path.getFileName().toString();
+            if (!isKey(name) || !Files.isRegularFile(path)) continue;
+
+            stored.add(new Stored(name, Files.size(path), Files.getLastModifiedTime(path).toMillis()));
+        }
+
+        stored.sort(Comparator.comparingLong(Stored::modified));
+        for (Stored file : stored) {
+            files.put(file.key(), file.size());
+            diskSize += file.size();
+        }
+    }
+
+    private static boolean isKey(String name) {
+        if (name.length() != 64) return false;
+
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f')) return false;
+        }
+
+        return true;
+    }
+
+    // The disk only backs the cache, so unreadable or unwritable files are treated as misses.
+
+    private static Optional<String> read(Path file) {
+        try {
+            String content = Files.readString(file, StandardCharsets.UTF_8);
+            if (content.startsWith("N")) return Optional.empty();
+            if (content.startsWith("S")) return Optional.of(content.substring(1));
+            return null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void write(String key, String output) {
+        Path file = directory.resolve(key);
+        Path temporary = null;
+        try {
+            temporary = Files.createTempFile(directory, key, ".tmp");
+            Files.writeString(temporary, output == null ? "N" : "S" + output, StandardCharsets.UTF_8);
+            long size = Files.size(temporary);
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            stored(key, size);
+        } catch (IOException e) {
+            try {
+                if (temporary != null) Files.deleteIfExists(temporary);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    // Records a written file and deletes the oldest ones while the directory holds too much.
+    private void stored(String key, long size) {
+        ArrayList<String> evicted = new ArrayList<>();
+        synchronized (files) {
+            Long previous = files.remove(key);
+            if (previous != null) diskSize -= previous;
+
+            files.put(key, size);
+            diskSize += size;
+
+            Iterator<Map.Entry<String, Long>> eldest = files.entrySet().iterator();
+            while (diskSize > maxDiskSize && eldest.hasNext()) {
+                Map.Entry<String, Long> entry = eldest.next();
+                diskSize -= entry.getValue();
+                evicted.add(entry.getKey());
+                eldest.remove();
+                diskEvictions.increment();
+            }
+        }
+
+        for (String name : evicted) {
+            try {
+                Files.deleteIfExists(directory.resolve(name));
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package solution;
+
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Runs many programs at once on a few carrier threads. A carrier runs the program at the head of the run queue
+// for a slice of about sliceLength instructions and then queues it again, so a long program can't keep a carrier
+// from the others. With ROUND_ROBIN, programs take turns in the order they were queued. With PRIORITY, programs
+// with a higher priority go first, for as long as there are any, and those with the same priority take turns.
+// Programs start in the block engine and switch to compiled code once they run long, see Execution.
+public final class Scheduler implements AutoCloseable {
+    public enum Policy {
+        ROUND_ROBIN,
+        PRIORITY
+    }
+
+    private final TieredEngine engine;
+    private final long sliceLength;
+    private final PriorityBlockingQueue<Task> queue;
+    private final Thread[] carriers;
+
+    // Taken each time a program is queued, so programs that were queued earlier run earlier
+    private final AtomicLong turns = new AtomicLong();
+
+    private final LongAdder slices = new LongAdder();
+    private final LongAdder sliceNanos = new LongAdder();
+    private final LongAccumulator maxSliceNanos = new LongAccumulator(Math::max, 0);
+
+    private volatile boolean closed;
+
+    public Scheduler(int carriers, long sliceLength, Policy policy) {
+        this(new TieredEngine(), carriers, sliceLength, policy);
+    }
+
+    public Scheduler(TieredEngine engine, int carriers, long sliceLength, Policy policy) {
+        if (carriers < 1) {
+            throw new IllegalArgumentException("There must be at least 1 carrier.");
+        }
+
+        if (sliceLength < 1) {
+            throw new IllegalArgumentException("Slices must be at least 1 instruction long.");
+        }
+
+        this.engine = engine;
+        this.sliceLength = sliceLength;
+
+        Comparator<Task> order = Comparator.comparingLong(task -> task.turn);
+        if (policy == Policy.PRIORITY) {
+            order = Comparator.comparingInt((Task task) -> task.priority).reversed().thenComparing(order);
+        }
+
+        this.queue = new PriorityBlockingQueue<>(64, order);
+        this.carriers = new Thread[carriers];
+        for (int i = 0; i < carriers; i++) {
+            Thread carrier = new Thread(this::carry, "assembly-scheduler-" + i);
+            carrier.setDaemon(true);
+            carrier.start();
+            this.carriers[i] = carrier;
+        }
+    }
+
+    public CompletableFuture<ExecutionResult> submit(String source) {
+        return submit(source, 0);
+    }
+
+    // Higher priorities run first under Policy.PRIORITY and don't matter otherwise.
+    // Cancelling the future drops the program the next time it would run.
+    public CompletableFuture<ExecutionResult> submit(String source, int priority) {
+        if (closed) {
+            throw new RejectedExecutionException("Scheduler is closed.");
+        }
+
+        Task task = new Task(source, priority);
+        enqueue(task);
+
+        // Closed in the meantime, after the queue was emptied
+        if (closed && queue.remove(task)) {
+            throw new RejectedExecutionException("Scheduler is closed.");
+        }
+
+        return task.result;
+    }
+
+    public SchedulerStats getStats() {
+        long count = slices.sum();
+        return new SchedulerStats(queue.size(), count, count == 0 ? 0 : sliceNanos.sum() / count, maxSliceNanos.get());
+    }
+
+    // Interrupts the carriers and cancels all programs that haven't ended. Running slices in compiled code stop at
+    // their next backward jump or call, those in the block engine finish first.
+    @Override
+    public void close() {
+        closed = true;
+        for (Thread carrier : carriers) {
+            carrier.interrupt();
+        }
+
+        for (Thread carrier : carriers) {
+            if (carrier == Thread.currentThread()) continue;
+
+            try {
+                carrier.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        for (Task task = queue.poll(); task != null; task = queue.poll()) {
+            task.result.cancel(false);
+        }
+    }
+
+    private void enqueue(Task task) {
+        task.turn = turns.getAndIncrement();
+        queue.add(task);
+    }
+
+    private void carry() {
+        while (!closed) {
+            Task task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            if (task.result.isDone()) continue;
+
+            long start = System.nanoTime();
+            ExecutionResult result;
+            try {
+                result = slice(task);
+            } catch (CancellationException e) {
+                // Interrupted by close
+                task.result.cancel(false);
+                continue;
+            } catch (Error e) {
+                // Fails the program rather than the carrier, which goes on with the others
+                task.result.completeExceptionally(e);
+                continue;
+            }
+
+            long nanos = System.nanoTime() - start;
+            slices.increment();
+            sliceNanos.add(nanos);
+            maxSliceNanos.accumulate(nanos);
+
+            if (result != null) {
+                task.result.complete(result);
+            } else if (closed) {
+                task.result.cancel(false);
+            } else {
+                enqueue(task);
+
+                // Closed in the meantime, after the queue was emptied
+                if (closed && queue.remove(task)) {
+                    task.result.cancel(false);
+                }
+            }
+        }
+    }
+
+    // Returns null if the program hasn't ended yet. Compiled code that was interrupted throws a CancellationException.
+    private ExecutionResult slice(Task task) {
+        try {
+            // Compiled by the carrier, as part of the first slice
+            if (task.execution == null) {
+                task.execution = engine.start(task.source, Execution.UNLIMITED);
+            }
+
+            return task.execution.run(sliceLength) ? task.execution.getResult() : null;
+        } catch (CancellationException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            return ExecutionResult.failed(e);
+        }
+    }
+
+    private static final class Task {
+        private final String source;
+        private final int priority;
+        private final CompletableFuture<ExecutionResult> result = new CompletableFuture<>();
+
+        private Execution execution;
+
+        // Only changes while the task is out of the queue
+        private long turn;
+
+        Task(String source, int priority) {
+            this.source = source;
+            this.priority = priority;
+        }
+    }
+}
@@ -0,0 +1,4 @@
+package solution;
+
+public record SchedulerStats(int queueDepth, long slices, long averageSliceNanos, long maxSliceNanos) {
+}
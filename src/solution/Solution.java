@@ -1,9 +1,33 @@
 package solution;
 
 public class Solution {
+    private static final TieredEngine ENGINE = new TieredEngine();
 
     public static String interpret(final String input) {
-        AssemblyInterpreter interpreter = new AssemblyInterpreter(input);
-        return interpreter.getOutput();
+        return ENGINE.interpret(input);
+    }
+
+    public static String interpretCompiled(final String input) {
+        return interpretCompiled(input, CompilerOptions.DEFAULT);
+    }
+
+    public static String interpretCompiled(final String input, CompilerOptions options) {
+        return BytecodeCompiler.compile(Program.compile(input, options)).run();
+    }
+
+    public static String interpretBlocks(final String input) {
+        return interpretBlocks(input, CompilerOptions.DEFAULT);
+    }
+
+    public static String interpretBlocks(final String input, CompilerOptions options) {
+        return BlockProgram.compile(Program.compile(input, options)).run();
+    }
+
+    public static String interpretClosures(final String input) {
+        return interpretClosures(input, CompilerOptions.DEFAULT);
+    }
+
+    public static String interpretClosures(final String input, CompilerOptions options) {
+        return ClosureProgram.compile(Program.compile(input, options)).run();
     }
 }
@@ -0,0 +1,41 @@
+package solution;
+
+// Turns CALLs whose return site returns right away into JMPs. The RET ending the subroutine would return to a RET,
+// which returns to the caller, so going to the caller directly does the same with one return address less on the
+// stack. Recursive subroutines ending in such a call run in constant stack space.
+// An empty stack fails at the subroutine's RET instead of the one after the call, with the same exception.
+final class TailCalls {
+    // Unconditional jumps followed when looking for the RET after a CALL
+    private static final int MAX_HOPS = 8;
+
+    private TailCalls() {
+    }
+
+    static Instruction[] eliminate(Instruction[] instructions) {
+        Instruction[] result = instructions;
+        for (int i = 0; i < instructions.length; i++) {
+            Instruction instruction = instructions[i];
+            if (instruction.function != Function.CALL || instruction.target < 0 || !returns(instructions, i + 1)) continue;
+
+            if (result == instructions) {
+                result = instructions.clone();
+            }
+
+            result[i] = new Instruction(Function.JMP, instruction.operands, instruction.target, instruction.label, instruction.line);
+        }
+
+        return result;
+    }
+
+    private static boolean returns(Instruction[] instructions, int index) {
+        for (int hop = 0; hop <= MAX_HOPS && index < instructions.length; hop++) {
+            Instruction instruction = instructions[index];
+            if (instruction.function == Function.RET) return true;
+            if (instruction.function != Function.JMP || instruction.target < 0) return false;
+
+            index = instruction.target;
+        }
+
+        return false;
+    }
+}
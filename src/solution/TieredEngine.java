@@ -0,0 +1,194 @@
+package solution;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs programs in the interpreter until they become hot, then switches them to BytecodeCompiler.
+// A program is hot once it has been run invocationThreshold times, or once one of its loop headers has been
+// jumped back to backEdgeThreshold times. In the latter case the running execution switches over as well.
+// Parsed programs and their profiles are cached by source, so resubmitted programs skip parsing.
+public final class TieredEngine {
+    private final int invocationThreshold;
+    private final int backEdgeThreshold;
+    private final CompilerOptions options;
+
+    private static final ThreadLocal<Machine> MACHINES = ThreadLocal.withInitial(Machine::new);
+
+    private final LruCache<String, Profile> profiles;
+    private volatile ResultCache results;
+
+    public TieredEngine() {
+        this(Integer.getInteger("assembly.invocationThreshold", 50), Integer.getInteger("assembly.backEdgeThreshold", 10_000));
+    }
+
+    public TieredEngine(int invocationThreshold, int backEdgeThreshold) {
+        this(invocationThreshold, backEdgeThreshold,
+                Integer.getInteger("assembly.cacheSize", 4096), Long.getLong("assembly.cacheWeight", 64L << 20));
+    }
+
+    // Compiles programs with the given options instead of CompilerOptions.DEFAULT.
+    public TieredEngine(int invocationThreshold, int backEdgeThreshold, CompilerOptions options) {
+        this(invocationThreshold, backEdgeThreshold,
+                Integer.getInteger("assembly.cacheSize", 4096), Long.getLong("assembly.cacheWeight", 64L << 20), options);
+    }
+
+    // The cache holds at most maxPrograms programs whose sources add up to at most maxWeight characters.
+    // Only source length counts towards the weight, not the decoded or compiled program, which are mostly
+    // proportional to it. Programs that evaluated to a constant while compiling are much smaller than that.
+    public TieredEngine(int invocationThreshold, int backEdgeThreshold, int maxPrograms, long maxWeight) {
+        this(invocationThreshold, backEdgeThreshold, maxPrograms, maxWeight, CompilerOptions.DEFAULT);
+    }
+
+    public TieredEngine(int invocationThreshold, int backEdgeThreshold, int maxPrograms, long maxWeight,
+                        CompilerOptions options) {
+        if (invocationThreshold < 0 || backEdgeThreshold < 0) {
+            throw new IllegalArgumentException("Thresholds can't be negative.");
+        }
+
+        this.invocationThreshold = invocationThreshold;
+        this.backEdgeThreshold = backEdgeThreshold;
+        this.options = options;
+        this.profiles = new LruCache<>(maxPrograms, maxWeight, (source, profile) -> source.length());
+    }
+
+    public CacheStats getCacheStats() {
+        return profiles.stats();
+    }
+
+    // Outputs of finished programs are stored in and answered from the given cache. Pass null to disable it.
+    public void setResultCache(ResultCache results) {
+        this.results = results;
+    }
+
+    public String interpret(final String input) {
+        Profile profile = profile(input);
+
+        ResultCache results = this.results;
+        if (results == null) {
+            return execute(profile);
+        }
+
+        if (profile.resultKey == null) {
+            profile.resultKey = ResultCache.key(profile.program);
+        }
+
+        Optional<String> cached = results.get(profile.resultKey);
+        if (cached != null) {
+            return cached.orElse(null);
+        }
+
+        String output = execute(profile);
+        results.put(profile.resultKey, output);
+        return output;
+    }
+
+    // Runs the program for at most budget instructions in the block engine, which counts them per basic block.
+    // Instructions are those of the optimized program, so a skipped loop costs less than it would unoptimized.
+    // The program isn't evaluated while compiling though, that would run it without counting.
+    public ExecutionResult interpret(final String input, long budget) {
+        return bounded(profile(input)).run(budget);
+    }
+
+    // Starts running the program in slices, see Execution. Without a budget, shares the compiled program with interpret.
+    Execution start(String input, long budget) {
+        Profile profile = profile(input);
+        if (budget != Execution.UNLIMITED) {
+            return new Execution(bounded(profile), budget);
+        }
+
+        return new Execution(blocks(profile), budget, () -> compile(profile));
+    }
+
+    private Profile profile(String input) {
+        return profiles.computeIfAbsent(input, source -> new Profile(source, Program.compile(source, options)));
+    }
+
+    private BlockProgram blocks(Profile profile) {
+        BlockProgram blocks = profile.blocks;
+        if (blocks == null) {
+            // Racy, at worst a program is compiled twice
+            blocks = profile.blocks = BlockProgram.compile(profile.program);
+        }
+
+        return blocks;
+    }
+
+    // The program compiled without evaluation, for runs with a budget.
+    private BlockProgram bounded(Profile profile) {
+        if (options.getEvaluationBudget() == 0) {
+            return blocks(profile);
+        }
+
+        BlockProgram bounded = profile.bounded;
+        if (bounded == null) {
+            bounded = profile.bounded = BlockProgram.compile(Program.compile(profile.source, options.withEvaluationBudget(0)));
+        }
+
+        return bounded;
+    }
+
+    private String execute(Profile profile) {
+        CompiledProgram compiled = profile.compiled;
+        if (compiled == null && profile.invocations.incrementAndGet() >= invocationThreshold) {
+            compiled = compile(profile);
+        }
+
+        if (compiled != null) {
+            return compiled.run();
+        }
+
+        return MACHINES.get().run(profile.program, this, profile);
+    }
+
+    // Called by the interpreter on every backwards jump. Returns the compiled program once the loop is hot.
+    // Hot loops aren't counted anymore, so their counters can't overflow.
+    CompiledProgram onBackEdge(Profile profile, int target) {
+        if (profile.backEdges[target] < backEdgeThreshold && ++profile.backEdges[target] < backEdgeThreshold) {
+            return null;
+        }
+
+        return compile(profile);
+    }
+
+    private CompiledProgram compile(Profile profile) {
+        // Once decided, hot loops of programs that can't be compiled keep running without taking the lock
+        CompiledProgram compiled = profile.compiled;
+        if (compiled != null || profile.uncompilable) {
+            return compiled;
+        }
+
+        synchronized (profile) {
+            if (profile.compiled == null && !profile.uncompilable) {
+                try {
+                    profile.compiled = BytecodeCompiler.compile(profile.program);
+                } catch (IllegalStateException e) {
+                    // Too large to be worth compiling, so it stays in the interpreter.
+                    profile.uncompilable = true;
+                }
+            }
+
+            return profile.compiled;
+        }
+    }
+
+    static final class Profile {
+        private final String source;
+        private final Program program;
+        private final AtomicInteger invocations = new AtomicInteger();
+
+        // Racy like any JVM profile counter. Losing the odd increment only delays compilation.
+        private final int[] backEdges;
+
+        private volatile CompiledProgram compiled;
+        private volatile BlockProgram blocks;
+        private volatile BlockProgram bounded;
+        private volatile boolean uncompilable;
+        private volatile String resultKey;
+
+        private Profile(String source, Program program) {
+            this.source = source;
+            this.program = program;
+            this.backEdges = new int[program.getInstructions().length + 1];
+        }
+    }
+}
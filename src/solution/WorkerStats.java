@@ -0,0 +1,11 @@
+package solution;
+
+// What one worker of a BatchExecutor did over all batches. Workers are idle while they look for a program to steal
+// or wait for the last ones to finish on other workers.
+public record WorkerStats(long programs, long slices, long steals, long busyNanos, long idleNanos) {
+    // The share of the time the worker spent running programs
+    public double utilization() {
+        long total = busyNanos + idleNanos;
+        return total == 0 ? 0 : (double) busyNanos / total;
+    }
+}
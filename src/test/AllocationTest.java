@@ -0,0 +1,36 @@
+package test;
+
+import com.sun.management.ThreadMXBean;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import solution.CompilerOptions;
+import solution.Machine;
+import solution.Program;
+
+import java.lang.management.ManagementFactory;
+
+class AllocationTest {
+    // A million iterations of six instructions each, so anything allocated per instruction is far above this
+    private static final long MAX_ALLOCATED_BYTES = 64 * 1024;
+
+    @Test
+    public void loopRunsWithoutAllocating() {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        Program program = Program.compile(loop, CompilerOptions.NONE);
+        Machine machine = new Machine();
+        machine.run(program);
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        String output = machine.run(program);
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        Assertions.assertEquals("sum = 3000000", output);
+        Assertions.assertTrue(allocated < MAX_ALLOCATED_BYTES, "Allocated " + allocated + " bytes");
+    }
+
+    private static final String loop = "\nmov   i, 0\nmov   s, 0\nloop:\n    call  step\n    cmp   i, 1000000\n    jl    loop\nmsg   'sum = ', s\nend\n\nstep:\n    inc   i\n    add   s, 3\n    ret\n";
+}
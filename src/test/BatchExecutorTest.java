@@ -0,0 +1,92 @@
+package test;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import solution.BatchExecutor;
+import solution.ExecutionResult;
+import solution.TieredEngine;
+import solution.WorkerStats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+class BatchExecutorTest {
+
+    @Test
+    public void returnsOutputsInInputOrder() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<String> sources = new ArrayList<>();
+            for (int i = 0 ; i < 1000 ; i++) {
+                sources.add("mov a, " + i + "\nmul a, 2\nmsg a\nend\n");
+            }
+
+            List<ExecutionResult> results = new BatchExecutor(executor, 4).run(sources);
+            for (int i = 0 ; i < sources.size() ; i++) {
+                Assertions.assertEquals(ExecutionResult.Status.COMPLETED, results.get(i).status());
+                Assertions.assertEquals(Integer.toString(i * 2), results.get(i).output());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void reportsEachProgramsStatus() {
+        List<ExecutionResult> results = new BatchExecutor().run(List.of("msg 'ok'\nend\n", "msg a\nend\n", "msg 'no end'\n"));
+
+        Assertions.assertEquals(ExecutionResult.Status.COMPLETED, results.get(0).status());
+        Assertions.assertEquals("ok", results.get(0).output());
+        Assertions.assertEquals(ExecutionResult.Status.FAILED, results.get(1).status());
+        Assertions.assertEquals("Register a was fetched but doesn't exist.", results.get(1).error().getMessage());
+        Assertions.assertEquals(ExecutionResult.Status.COMPLETED, results.get(2).status());
+        Assertions.assertNull(results.get(2).output());
+    }
+
+    @Test
+    public void stopsProgramsThatRunOutOfBudget() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<String> sources = List.of("mov a, 0\nmsg 'started'\nloop:\ninc a\njmp loop\n", "msg 'ok'\nend\n");
+            List<ExecutionResult> results = new BatchExecutor(new TieredEngine(), executor, 2, 10_000).run(sources);
+
+            Assertions.assertEquals(ExecutionResult.Status.BUDGET_EXHAUSTED, results.get(0).status());
+            Assertions.assertEquals("started", results.get(0).output());
+            Assertions.assertEquals(ExecutionResult.Status.COMPLETED, results.get(1).status());
+            Assertions.assertEquals("ok", results.get(1).output());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void reportsWhatEachWorkerDid() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            // One program takes millions of instructions, the rest only a few
+            List<String> sources = new ArrayList<>();
+            sources.add("mov i, 0\nmov s, 1\nloop:\nmul s, 3\ninc i\ncmp i, 2000000\njl loop\nmsg s\nend\n");
+            for (int i = 0 ; i < 100 ; i++) {
+                sources.add("mov a, " + i + "\nmsg a\nend\n");
+            }
+
+            BatchExecutor batchExecutor = new BatchExecutor(new TieredEngine(), executor, 4);
+            List<ExecutionResult> results = batchExecutor.run(sources);
+            Assertions.assertEquals("14436865", results.get(0).output());
+            for (int i = 1 ; i < results.size() ; i++) {
+                Assertions.assertEquals(Integer.toString(i - 1), results.get(i).output());
+            }
+
+            List<WorkerStats> stats = batchExecutor.getWorkerStats();
+            Assertions.assertEquals(4, stats.size());
+            Assertions.assertEquals(sources.size(), stats.stream().mapToLong(WorkerStats::programs).sum());
+            for (WorkerStats worker : stats) {
+                Assertions.assertTrue(worker.utilization() >= 0 && worker.utilization() <= 1);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
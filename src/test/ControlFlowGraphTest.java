@@ -0,0 +1,42 @@
+package test;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import solution.CompilerOptions;
+import solution.ControlFlowGraph;
+import solution.Program;
+
+import java.util.List;
+
+class ControlFlowGraphTest {
+
+    @Test
+    public void splitsBlocksAtLabelsJumpsAndCalls() {
+        ControlFlowGraph graph = ControlFlowGraph.build(Program.compile(factorial, CompilerOptions.NONE));
+        List<ControlFlowGraph.Block> blocks = graph.getBlocks();
+        Assertions.assertEquals(4, blocks.size());
+
+        ControlFlowGraph.Block main = blocks.get(0), end = blocks.get(1), loop = blocks.get(2), ret = blocks.get(3);
+        Assertions.assertEquals(0, main.getStart());
+        Assertions.assertEquals(3, main.getEnd());
+        Assertions.assertEquals(List.of(loop), main.getSuccessors());
+        Assertions.assertEquals(loop, main.getCallee());
+        Assertions.assertEquals(end, main.getReturnSite());
+
+        Assertions.assertEquals(List.of(), end.getSuccessors());
+        Assertions.assertEquals(List.of(ret, loop), loop.getSuccessors());
+        Assertions.assertEquals(List.of(main, loop), loop.getPredecessors());
+        Assertions.assertEquals(List.of(end), ret.getSuccessors());
+        Assertions.assertTrue(blocks.stream().allMatch(ControlFlowGraph.Block::isReachable));
+    }
+
+    @Test
+    public void findsUnreachableBlocks() {
+        ControlFlowGraph graph = ControlFlowGraph.build(Program.compile("jmp over\nmsg 'never'\nover:\nend\n", CompilerOptions.NONE));
+        Assertions.assertEquals(3, graph.getBlocks().size());
+        Assertions.assertFalse(graph.getBlocks().get(1).isReachable());
+        Assertions.assertFalse(graph.getBlockAt(2).fallsOffEnd());
+    }
+
+    private final String factorial = "mov a, 5\nmov b, 1\ncall f\nmsg 'r', b\nend\nf:\nloop:\nmul b, a\ndec a\ncmp a, 1\njg loop\nret\n";
+}
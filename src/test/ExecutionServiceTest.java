@@ -0,0 +1,49 @@
+package test;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import solution.ExecutionService;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+
+class ExecutionServiceTest {
+
+    @Test
+    public void completesWithTheOutput() {
+        try (ExecutionService service = new ExecutionService()) {
+            Assertions.assertEquals("(5+1)/2 = 3", service.submit("mov a, 5\ninc a\ncall f\nmsg '(5+1)/2 = ', a\nend\nf:\ndiv a, 2\nret\n").join());
+        }
+    }
+
+    @Test
+    public void stopsRunawayProgramsOnTimeout() {
+        // With a single thread, the second program only runs once the first one gave its thread back
+        try (ExecutionService service = new ExecutionService(Executors.newSingleThreadExecutor())) {
+            CompletableFuture<String> runaway = service.submit(runawayLoop, Duration.ofMillis(100));
+            CompletableFuture<String> next = service.submit("msg 'done'\nend\n");
+
+            CompletionException e = Assertions.assertThrows(CompletionException.class, runaway::join);
+            Assertions.assertInstanceOf(TimeoutException.class, e.getCause());
+            Assertions.assertEquals("done", next.join());
+        }
+    }
+
+    @Test
+    public void stopsCancelledPrograms() {
+        try (ExecutionService service = new ExecutionService(Executors.newSingleThreadExecutor())) {
+            CompletableFuture<String> runaway = service.submit(runawayLoop);
+            CompletableFuture<String> next = service.submit("msg 'done'\nend\n");
+
+            runaway.cancel(true);
+            Assertions.assertThrows(CancellationException.class, runaway::join);
+            Assertions.assertEquals("done", next.join());
+        }
+    }
+
+    private static final String runawayLoop = "mov a, 0\nloop:\ninc a\njmp loop\n";
+}
@@ -0,0 +1,65 @@
+package test;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import solution.CompilerOptions;
+import solution.Machine;
+import solution.PeepholeOptimizer;
+import solution.Program;
+
+import java.util.List;
+import java.util.Map;
+
+class PeepholeOptimizerTest {
+
+    @Test
+    public void mergesStepChains() {
+        assertRewrite("step-chain", 1, "\nmov   a, 1\ninc   a\ninc   a\ndec   a\ninc   a\nmsg   a\nend\n",
+                List.of("mov a, 1", "add a, 2", "msg a", "end"));
+    }
+
+    @Test
+    public void dropsIdentities() {
+        assertRewrite("identity", 2, "\nmov   a, 1\nadd   a, 0\nmul   a, 1\nmsg   a\nend\n",
+                List.of("mov a, 1", "msg a", "end"));
+    }
+
+    @Test
+    public void dropsSelfMoves() {
+        assertRewrite("self-move", 1, "\nmov   a, 1\nmov   a, a\nmsg   a\nend\n",
+                List.of("mov a, 1", "msg a", "end"));
+    }
+
+    @Test
+    public void dropsOverwrittenMoves() {
+        assertRewrite("overwritten-move", 1, "\nmov   a, 1\nmov   a, 2\nmsg   a\nend\n",
+                List.of("mov a, 2", "msg a", "end"));
+    }
+
+    @Test
+    public void dropsJumpsToTheNextInstruction() {
+        assertRewrite("jump-to-next", 1, "\nmov   a, 1\njmp   next\nnext:\n    msg   a\n    end\n",
+                List.of("mov a, 1", "msg a", "end"));
+    }
+
+    @Test
+    public void appliesOnlyTheChosenRules() {
+        PeepholeOptimizer optimizer = PeepholeOptimizer.of("identity");
+        String program = "\nmov   a, 1\ninc   a\ninc   a\nmsg   a\nend\n";
+        Assertions.assertEquals(List.of("mov a, 1", "inc a", "inc a", "msg a", "end"),
+                Program.compile(program, CompilerOptions.NONE.withPeephole(optimizer)).getListing());
+        Assertions.assertEquals(Map.of("identity", 0L), optimizer.getRuleHits());
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> PeepholeOptimizer.of("identity", "unknown"));
+    }
+
+    // Runs a single rule with every other optimization off, and checks the program still does the same
+    private static void assertRewrite(String rule, long hits, String program, List<String> listing) {
+        PeepholeOptimizer optimizer = PeepholeOptimizer.of(rule);
+        Program optimized = Program.compile(program, CompilerOptions.NONE.withPeephole(optimizer));
+        Assertions.assertEquals(listing, optimized.getListing());
+        Assertions.assertEquals(Map.of(rule, hits), optimizer.getRuleHits());
+        Machine machine = new Machine();
+        Assertions.assertEquals(machine.run(Program.compile(program, CompilerOptions.NONE)), machine.run(optimized));
+    }
+}
@@ -0,0 +1,119 @@
+package test;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import solution.CompilerOptions;
+import solution.Machine;
+import solution.Program;
+import solution.Solution;
+
+import java.util.List;
+
+class ProgramTest {
+
+    @Test
+    public void fusesComparisonsWithTheirJumps() {
+        // The fused instructions are only entered at the INC and the CMP, the JNE stays for jumps that land on it
+        Assertions.assertEquals(List.of("mov i, 0", "step_jne i, 1, i, 10, loop @1", "cmp_jne i, 10, loop @1", "jne loop @1", "msg i", "end"),
+                Program.compile(countToTen, CompilerOptions.NONE.withFusion(true)).getListing());
+    }
+
+    @Test
+    public void fusionCanBeSwitchedOff() {
+        assertUnfused(Program.compile(countToTen, CompilerOptions.NONE).getListing());
+        assertUnfused(Program.compile(countToTen, CompilerOptions.DEFAULT.withFusion(false).withEvaluationBudget(0)).getListing());
+
+        String previous = System.setProperty("assembly.fusion", "false");
+        try {
+            CompilerOptions options = CompilerOptions.fromSystemProperties();
+            Assertions.assertFalse(options.isFusion());
+            assertUnfused(Program.compile(countToTen, options.withEvaluationBudget(0)).getListing());
+        } finally {
+            if (previous == null) {
+                System.clearProperty("assembly.fusion");
+            } else {
+                System.setProperty("assembly.fusion", previous);
+            }
+        }
+    }
+
+    @Test
+    public void foldsComparisonsOfKnownValues() {
+        CompilerOptions options = CompilerOptions.NONE.withConstantFolding(true);
+
+        // The JE always jumps, so it becomes a JMP and the code it jumps over goes away
+        assertListing(List.of("jmp same @1", "msg 1", "end"), comparison(5), options);
+
+        // The JE never jumps, so it disappears along with the code only it reached. Everything else folds into the MSG.
+        assertListing(List.of("msg 5", "end"), comparison(4), options);
+    }
+
+    @Test
+    public void replacesProgramsThatFinishWhileCompilingWithTheirOutput() {
+        CompilerOptions options = CompilerOptions.NONE.withEvaluationBudget(100_000);
+        assertListing(List.of("msg '5! = 120'", "end"), factorial, options);
+
+        // Without END there is no output, and nothing to run either
+        assertListing(List.of(), "\nmsg   'no end'\n", options);
+
+        // The loop takes more than 20 instructions, so the program stays as it is
+        List<String> listing = Program.compile(factorial, CompilerOptions.NONE).getListing();
+        assertListing(listing, factorial, CompilerOptions.NONE.withEvaluationBudget(20));
+    }
+
+    @Test
+    public void inlinesCallsOfSmallLeaves() {
+        CompilerOptions options = CompilerOptions.NONE.withInlining(true);
+        assertListing(List.of("mov a, 11", "mov b, 3", "mov c, a", "div c, b", "mul c, b", "mov d, a", "sub d, c", "msg a, b, d", "end",
+                        "mov c, a", "div c, b", "mul c, b", "mov d, a", "sub d, c", "ret"),
+                "\nmov   a, 11\nmov   b, 3\ncall  mod_func\nmsg   a, b, d\nend\n\nmod_func:\n    mov   c, a\n    div   c, b\n    mul   c, b\n    mov   d, a\n    sub   d, c\n    ret\n",
+                options);
+
+        // Longer than 8 instructions, so the CALL stays
+        String large = "\nmov   a, 0\ncall  leaf\nmsg   a\nend\n\nleaf:\n" + "    inc   a\n".repeat(9) + "    ret\n";
+        assertListing(Program.compile(large, CompilerOptions.NONE).getListing(), large, options);
+
+        // Every copy adds 7 instructions to the 22 there are, so only 3 of the 10 CALLs fit before the program doubles
+        String busy = "\nmov   a, 0\n" + "call  leaf\n".repeat(10) + "msg   a\nend\n\nleaf:\n" + "    inc   a\n".repeat(8) + "    ret\n";
+        List<String> listing = Program.compile(busy, options).getListing();
+        Assertions.assertEquals(7, listing.stream().filter(line -> line.startsWith("call ")).count(), String.join("\n", listing));
+        Assertions.assertEquals(22 + 3 * 7, listing.size());
+        Assertions.assertEquals("80", new Machine().run(Program.compile(busy, options)));
+    }
+
+    @Test
+    public void turnsTailCallsIntoJumps() {
+        // Three million nested calls, which only return once they reach 0
+        String countdown = "\nmov   n, 3000000\ncall  down\nmsg   'done ', n\nend\n\ndown:\n    cmp   n, 0\n    je    stop\n    dec   n\n    call  down\nstop:\n    ret\n";
+        CompilerOptions options = CompilerOptions.NONE.withTailCalls(true);
+        assertListing(List.of("mov n, 3000000", "call down @4", "msg 'done ', n", "end", "cmp n, 0", "je stop @8", "dec n", "jmp down @4", "ret"),
+                countdown, options);
+
+        Assertions.assertEquals("done 0", Solution.interpretCompiled(countdown, options));
+        Assertions.assertEquals("done 0", Solution.interpretBlocks(countdown, options));
+        Assertions.assertEquals("done 0", Solution.interpretClosures(countdown, options));
+    }
+
+    // Checks the instructions the program compiles to, and that they still produce the unoptimized output
+    private static void assertListing(List<String> listing, String program, CompilerOptions options) {
+        Program compiled = Program.compile(program, options);
+        Assertions.assertEquals(listing, compiled.getListing(), options + "\n" + program);
+
+        Machine machine = new Machine();
+        Assertions.assertEquals(machine.run(Program.compile(program, CompilerOptions.NONE)), machine.run(compiled));
+    }
+
+    private static String comparison(int value) {
+        return "\nmov   a, 5\ncmp   a, " + value + "\nje    same\nmsg   a\nend\n\nsame:\n    msg   1\n    end\n";
+    }
+
+    private static void assertUnfused(List<String> listing) {
+        for (String line : listing) {
+            Assertions.assertFalse(line.startsWith("cmp_") || line.startsWith("step_"), String.join("\n", listing));
+        }
+    }
+
+    private static final String factorial = "\nmov   a, 5\nmov   b, a\nmov   c, a\ncall  proc_fact\ncall  print\nend\n\nproc_fact:\n    dec   b\n    mul   c, b\n    cmp   b, 1\n    jne   proc_fact\n    ret\n\nprint:\n    msg   a, '! = ', c ; output text\n    ret\n";
+
+    private static final String countToTen = "\nmov   i, 0\nloop:\n    inc   i\n    cmp   i, 10\n    jne   loop\nmsg   i\nend\n";
+}
@@ -0,0 +1,140 @@
+package test;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import solution.CacheStats;
+import solution.CompilerOptions;
+import solution.ResultCache;
+import solution.TieredEngine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+class ResultCacheTest {
+
+    @Test
+    public void sharesOutputsBetweenProgramsThatOnlyDifferInFormatting() {
+        ResultCache results = new ResultCache(16, 1 << 20);
+        TieredEngine engine = engine(results);
+
+        Assertions.assertEquals("5! = 120", engine.interpret(factorial));
+        Assertions.assertEquals("5! = 120", engine.interpret(reformattedFactorial));
+        Assertions.assertEquals(new CacheStats(1, 1, 0, 1, 64 + "5! = 120".length()), results.getStats());
+
+        Assertions.assertEquals("4! = 24", engine.interpret(factorial.replace("5", "4")));
+        Assertions.assertEquals(2, results.getStats().misses());
+    }
+
+    @Test
+    public void keepsOutputsOnDiskAcrossInstances() throws IOException {
+        Path directory = Files.createTempDirectory("results");
+        try {
+            ResultCache first = new ResultCache(16, 1 << 20, directory);
+            Assertions.assertEquals("5! = 120", engine(first).interpret(factorial));
+            Assertions.assertNull(engine(first).interpret(noEnd));
+            first.close();
+            Assertions.assertEquals(new CacheStats(0, 2, 0, 2, 10), first.getDiskStats());
+
+            ResultCache second = new ResultCache(16, 1 << 20, directory);
+            Assertions.assertEquals(new CacheStats(0, 0, 0, 2, 10), second.getDiskStats());
+            Assertions.assertEquals("5! = 120", engine(second).interpret(reformattedFactorial));
+            Assertions.assertNull(engine(second).interpret(noEnd));
+            second.close();
+            Assertions.assertEquals(new CacheStats(2, 0, 0, 2, 10), second.getDiskStats());
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void treatsUnreadableFilesAsMisses() throws IOException {
+        Path directory = Files.createTempDirectory("results");
+        try {
+            ResultCache first = new ResultCache(16, 1 << 20, directory);
+            engine(first).interpret(factorial);
+            engine(first).interpret(noEnd);
+            first.close();
+
+            // One file loses its format marker, the other becomes a directory that can't be read or replaced
+            List<Path> files = list(directory);
+            Files.writeString(files.get(0), "garbage");
+            Files.delete(files.get(1));
+            Files.createDirectories(files.get(1).resolve("blocked"));
+
+            ResultCache second = new ResultCache(16, 1 << 20, directory);
+            Assertions.assertEquals("5! = 120", engine(second).interpret(factorial));
+            Assertions.assertNull(engine(second).interpret(noEnd));
+            second.close();
+            Assertions.assertEquals(0, second.getDiskStats().hits());
+            Assertions.assertEquals(2, second.getDiskStats().misses());
+
+            // The corrupt file was written again, the directory is still in the way
+            ResultCache third = new ResultCache(16, 1 << 20, directory);
+            engine(third).interpret(factorial);
+            engine(third).interpret(noEnd);
+            third.close();
+            Assertions.assertEquals(1, third.getDiskStats().hits());
+            Assertions.assertEquals(1, third.getDiskStats().misses());
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void deletesTheOldestFilesBeyondTheDiskLimit() throws IOException {
+        Path directory = Files.createTempDirectory("results");
+        try {
+            // Each output takes 2 bytes on disk, so 2 of them fit
+            ResultCache results = new ResultCache(16, 1 << 20, directory, 5);
+            TieredEngine engine = engine(results);
+            for (int i = 1 ; i <= 3 ; i++) {
+                engine.interpret("msg " + i + "\nend\n");
+            }
+
+            results.close();
+            Assertions.assertEquals(new CacheStats(0, 3, 1, 2, 4), results.getDiskStats());
+            Assertions.assertEquals(2, list(directory).size());
+
+            ResultCache reopened = new ResultCache(16, 1 << 20, directory, 5);
+            engine = engine(reopened);
+            Assertions.assertEquals("1", engine.interpret("msg 1\nend\n"));
+            Assertions.assertEquals("3", engine.interpret("msg 3\nend\n"));
+            reopened.close();
+            Assertions.assertEquals(1, reopened.getDiskStats().hits());
+            Assertions.assertEquals(1, reopened.getDiskStats().misses());
+        } finally {
+            delete(directory);
+        }
+    }
+
+    // Without evaluation while compiling, so the cache keys follow the source
+    private static TieredEngine engine(ResultCache results) {
+        TieredEngine engine = new TieredEngine(50, 10_000, CompilerOptions.NONE);
+        engine.setResultCache(results);
+        return engine;
+    }
+
+    private static List<Path> list(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static final String factorial = "\nmov   a, 5\nmov   b, a\nmov   c, a\ncall  proc_fact\ncall  print\nend\n\nproc_fact:\n    dec   b\n    mul   c, b\n    cmp   b, 1\n    jne   proc_fact\n    ret\n\nprint:\n    msg   a, '! = ', c ; output text\n    ret\n";
+
+    private static final String reformattedFactorial = "mov a,5\nmov b,a ; comment\nmov c,a\ncall fact\ncall out\nend\nfact:\ndec b\nmul c,b\ncmp b,1\njne fact\nret\nout:\nmsg a,'! = ',c\nret\n";
+
+    private static final String noEnd = "msg 'no end'\n";
+}
@@ -0,0 +1,63 @@
+package test;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import solution.ExecutionResult;
+import solution.Scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+class SchedulerTest {
+
+    @Test
+    public void longProgramsDontStarveShortOnes() {
+        // A single carrier, which the program that never ends would otherwise keep for itself
+        try (Scheduler scheduler = new Scheduler(1, 1000, Scheduler.Policy.ROUND_ROBIN)) {
+            CompletableFuture<ExecutionResult> runaway = scheduler.submit("mov a, 0\nloop:\ninc a\njmp loop\n");
+
+            List<CompletableFuture<ExecutionResult>> results = new ArrayList<>();
+            for (int i = 0 ; i < 100 ; i++) {
+                results.add(scheduler.submit("mov a, " + i + "\nmul a, 2\nmsg a\nend\n"));
+            }
+
+            for (int i = 0 ; i < results.size() ; i++) {
+                Assertions.assertEquals(Integer.toString(i * 2), results.get(i).join().output());
+            }
+
+            runaway.cancel(true);
+            Assertions.assertThrows(CancellationException.class, runaway::join);
+            Assertions.assertTrue(scheduler.getStats().slices() > 100);
+        }
+    }
+
+    @Test
+    public void closingCancelsRunningPrograms() throws InterruptedException {
+        // Long enough slices for the program to be compiled and get interrupted in compiled code
+        CompletableFuture<ExecutionResult> runaway;
+        try (Scheduler scheduler = new Scheduler(1, 200_000, Scheduler.Policy.ROUND_ROBIN)) {
+            runaway = scheduler.submit("mov a, 0\nloop:\ninc a\njmp loop\n");
+            while (scheduler.getStats().slices() < 10) {
+                Thread.sleep(1);
+            }
+        }
+
+        Assertions.assertTrue(runaway.isCancelled());
+        Assertions.assertThrows(CancellationException.class, runaway::join);
+    }
+
+    @Test
+    public void reportsEachProgramsStatus() {
+        try (Scheduler scheduler = new Scheduler(2, 10, Scheduler.Policy.PRIORITY)) {
+            ExecutionResult counted = scheduler.submit("mov a, 0\nloop:\ninc a\ncmp a, 1000\njl loop\nmsg a\nend\n", 1).join();
+            ExecutionResult failed = scheduler.submit("msg a\nend\n").join();
+
+            Assertions.assertEquals(ExecutionResult.Status.COMPLETED, counted.status());
+            Assertions.assertEquals("1000", counted.output());
+            Assertions.assertEquals(ExecutionResult.Status.FAILED, failed.status());
+            Assertions.assertEquals("Register a was fetched but doesn't exist.", failed.error().getMessage());
+        }
+    }
+}
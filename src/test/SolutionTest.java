@@ -2,7 +2,14 @@ package test;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import solution.CompilerOptions;
+import solution.Machine;
+import solution.Program;
 import solution.Solution;
+import solution.TieredEngine;
+
+import java.util.List;
+import java.util.function.Function;
 
 class SolutionTest {
 
@@ -13,6 +20,124 @@ class SolutionTest {
         }
     }
 
+    @Test
+    public void unoptimizedSampleTests() {
+        assertSamples(CompilerOptions.NONE);
+    }
+
+    @Test
+    public void foldedSampleTests() {
+        assertSamples(CompilerOptions.NONE.withConstantFolding(true));
+    }
+
+    @Test
+    public void inlinedSampleTests() {
+        assertSamples(CompilerOptions.NONE.withInlining(true));
+    }
+
+    @Test
+    public void tailCallSampleTests() {
+        assertSamples(CompilerOptions.NONE.withTailCalls(true));
+    }
+
+    @Test
+    public void evaluatedSampleTests() {
+        assertSamples(CompilerOptions.NONE.withEvaluationBudget(100_000));
+    }
+
+    @Test
+    public void optimizedSampleTests() {
+        // Without evaluation the engines still run the fused and folded code, with it every sample is a constant
+        assertSamples(CompilerOptions.DEFAULT.withEvaluationBudget(0));
+        assertSamples(CompilerOptions.DEFAULT);
+    }
+
+    @Test
+    public void countingLoopTests() {
+        // Billions of iterations, unless the loops are skipped
+        Machine machine = new Machine();
+        CompilerOptions options = CompilerOptions.NONE.withLoopAcceleration(true);
+        Assertions.assertEquals("2147483647 -2147483644", machine.run(Program.compile(countingLoop, options)));
+        Assertions.assertEquals("sum = -1243309312", machine.run(Program.compile(summingLoop, options)));
+    }
+
+    @Test
+    public void conditionalJumpsFailBeforeAnyCompare() {
+        for (int i = 0 ; i < uncompared.length ; i++) {
+            assertFailure(IllegalStateException.class, "Conditional jump at line " + uncomparedLines[i] + " ran before any CMP.",
+                    uncompared[i], CompilerOptions.NONE);
+        }
+    }
+
+    @Test
+    public void movingMissingRegistersFailsOnlyOnRead() {
+        for (CompilerOptions options : new CompilerOptions[]{CompilerOptions.NONE, CompilerOptions.DEFAULT}) {
+            assertOutput("r 6", overwrittenCopy, options);
+            assertFailure(RuntimeException.class, "Register d was fetched but doesn't exist.", readCopy, options);
+        }
+    }
+
+    @Test
+    public void literalsOutOfRangeFailOnlyOnceExecuted() {
+        for (CompilerOptions options : new CompilerOptions[]{CompilerOptions.NONE, CompilerOptions.DEFAULT}) {
+            assertOutput("x", unreachableLiteral, options);
+            assertFailure(NumberFormatException.class, "For input string: \"99999999999\"", reachableLiteral, options);
+        }
+    }
+
+    private static void assertSamples(CompilerOptions options) {
+        for (int i = 0 ; i < expected.length ; i++) {
+            assertOutput(expected[i], programs[i], options);
+        }
+    }
+
+    private static void assertOutput(String output, String program, CompilerOptions options) {
+        for (Function<String, String> engine : engines(options)) {
+            for (int run = 0 ; run < 2 ; run++) {
+                Assertions.assertEquals(output, engine.apply(program), options + "\n" + program);
+            }
+        }
+    }
+
+    private static void assertFailure(Class<? extends RuntimeException> type, String message, String program, CompilerOptions options) {
+        for (Function<String, String> engine : engines(options)) {
+            for (int run = 0 ; run < 2 ; run++) {
+                Assertions.assertEquals(message, Assertions.assertThrows(type, () -> engine.apply(program), options + "\n" + program).getMessage());
+            }
+        }
+    }
+
+    // Every way to run a program compiled with the given options. The tiered engine compiles programs on their second
+    // run and loops on their first back edge.
+    private static List<Function<String, String>> engines(CompilerOptions options) {
+        Machine machine = new Machine();
+        TieredEngine tiered = new TieredEngine(2, 1, options);
+        return List.of(source -> machine.run(Program.compile(source, options)),
+                source -> Solution.interpretCompiled(source, options),
+                source -> Solution.interpretBlocks(source, options),
+                source -> Solution.interpretClosures(source, options),
+                tiered::interpret);
+    }
+
+    private static final String unreachableLiteral = "\nmsg   'x'\nend\nmov   a, 99999999999\n";
+
+    private static final String reachableLiteral = "\nmov   a, 1\nadd   a, 99999999999\nmsg   a\nend\n";
+
+    // Copies b before it exists, which only fails once the copy is read
+    private static final String overwrittenCopy = "\nmov   i, 0\nloop:\n    mov   d, b\n    inc   i\n    cmp   i, 3\n    jl    loop\nmov   d, 6\nmsg   'r ', d\nend\n";
+
+    private static final String readCopy = "\nmov   i, 0\nloop:\n    mov   d, b\n    inc   i\n    cmp   i, 3\n    jl    loop\nmsg   'r ', d\nend\n";
+
+    // The second one only gets to the jump after its loop went hot
+    private static final String[] uncompared = {"\nmov   a, 1\njne   skip\nmsg   'a = ', a\nskip:\nend\n",
+            "\nmov   n, 0\nloop:\n    inc   n\n    call  check\n    jmp   loop\n\ncheck:\n    mov   k, n\n    div   k, 3000\n    jne   done\n    ret\n\ndone:\n    msg   'n = ', n\n    end\n"};
+
+    private static final int[] uncomparedLines = {3, 11};
+
+    private static final String countingLoop = "\nmov   i, 0\nmov   s, 7\nloop:\n    inc   i\n    add   s, 3\n    cmp   i, 2147483647\n    jl    loop\nmsg   i, ' ', s\nend\n";
+
+    private static final String summingLoop = "\nmov   i, 0\nmov   s, 0\nloop:\n    add   s, i\n    inc   i\n    cmp   i, 1000000000\n    jl    loop\nmsg   'sum = ', s\nend\n";
+
     private static final String[] programs = {
             "\n; My first program\nmov  a, 5\ninc  a\ncall function\nmsg  '(5+1)/2 = ', a    ; output message\nend\n\nfunction:\n    div  a, 2\n    ret\n",
             "\nmov   a, 5\nmov   b, a\nmov   c, a\ncall  proc_fact\ncall  print\nend\n\nproc_fact:\n    dec   b\n    mul   c, b\n    cmp   b, 1\n    jne   proc_fact\n    ret\n\nprint:\n    msg   a, '! = ', c ; output text\n    ret\n",
@@ -0,0 +1,112 @@
+package test;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import solution.CacheStats;
+import solution.CompilerOptions;
+import solution.ExecutionResult;
+import solution.TieredEngine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+class TieredEngineTest {
+
+    @Test
+    public void uncompilableHotLoopsKeepRunningInTheInterpreter() throws Exception {
+        // Every run and every back edge asks for the compiled program, which never comes
+        TieredEngine engine = new TieredEngine(1, 1, CompilerOptions.NONE);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> runs = new ArrayList<>();
+            for (int i = 0 ; i < 16 ; i++) {
+                runs.add(executor.submit(() -> engine.interpret(uncompilableLoop)));
+            }
+
+            for (Future<String> run : runs) {
+                Assertions.assertEquals("i = 100000", run.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedProgramsFirst() {
+        TieredEngine engine = new TieredEngine(50, 10_000, 2, 1 << 20);
+        engine.interpret(program(1));
+        engine.interpret(program(2));
+        engine.interpret(program(1));
+        engine.interpret(program(3));
+        Assertions.assertEquals(new CacheStats(1, 3, 1, 2, 2L * program(1).length()), engine.getCacheStats());
+
+        // 2 was used least recently, so it was evicted rather than 1
+        engine.interpret(program(1));
+        Assertions.assertEquals(new CacheStats(2, 3, 1, 2, 2L * program(1).length()), engine.getCacheStats());
+        engine.interpret(program(2));
+        Assertions.assertEquals(new CacheStats(2, 4, 2, 2, 2L * program(1).length()), engine.getCacheStats());
+    }
+
+    @Test
+    public void evictsProgramsOnceTheirSourcesGetTooLong() {
+        // Weights are source lengths, so this holds two programs
+        TieredEngine engine = new TieredEngine(50, 10_000, 8, 2L * program(1).length() + 1);
+        for (int i = 1 ; i <= 4 ; i++) {
+            Assertions.assertEquals(Integer.toString(i), engine.interpret(program(i)));
+        }
+
+        Assertions.assertEquals(new CacheStats(0, 4, 2, 2, 2L * program(1).length()), engine.getCacheStats());
+        engine.interpret(program(4));
+        engine.interpret(program(1));
+        Assertions.assertEquals(new CacheStats(1, 5, 3, 2, 2L * program(1).length()), engine.getCacheStats());
+    }
+
+    @Test
+    public void cachesEachProgramOnceUnderContention() throws Exception {
+        TieredEngine engine = new TieredEngine();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> runs = new ArrayList<>();
+            for (int i = 0 ; i < 1000 ; i++) {
+                int program = i % 4;
+                runs.add(executor.submit(() -> engine.interpret(program(program))));
+            }
+
+            for (int i = 0 ; i < runs.size() ; i++) {
+                Assertions.assertEquals(Integer.toString(i % 4), runs.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // Threads missing at once all count a miss, but only one of them caches the program
+        CacheStats stats = engine.getCacheStats();
+        Assertions.assertEquals(1000, stats.hits() + stats.misses());
+        Assertions.assertTrue(stats.misses() >= 4);
+        Assertions.assertEquals(0, stats.evictions());
+        Assertions.assertEquals(4, stats.size());
+        Assertions.assertEquals(4L * program(0).length(), stats.weight());
+    }
+
+    @Test
+    public void budgetsCountInstructionsThatRanWhileCompiling() {
+        // Short enough to be evaluated while compiling, which must not make it free
+        String loop = "\nmov   i, 0\nmov   p, 1\nloop:\n    mul   p, 3\n    inc   i\n    cmp   i, 20000\n    jl    loop\nmsg   'p = ', p\nend\n";
+        TieredEngine engine = new TieredEngine(50, 10_000, CompilerOptions.DEFAULT);
+        String output = engine.interpret(loop);
+
+        Assertions.assertEquals(ExecutionResult.Status.BUDGET_EXHAUSTED, engine.interpret(loop, 10).status());
+        Assertions.assertEquals(new ExecutionResult(ExecutionResult.Status.COMPLETED, output, null), engine.interpret(loop, 100_000));
+    }
+
+    // Programs of the same length, which output their number
+    private static String program(int number) {
+        return "mov   a, " + number + "\nmsg   a\nend\n";
+    }
+
+    // The INC without a register makes BytecodeCompiler refuse the program, even though it's never run
+    private static final String uncompilableLoop = "\nmov   i, 0\nloop:\n    inc   i\n    cmp   i, 100000\n    jl    loop\nmsg   'i = ', i\nend\ninc\n";
+}